@@ -0,0 +1,64 @@
+package ru.gerilovich.benchmarks;
+
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.models.Role;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detached entity graphs shaped like the ones loaded from the database.
+ */
+final class Graphs {
+    private static final Color[] COLORS = Color.values();
+
+    private Graphs() {
+    }
+
+    static Owner owner(long id) {
+        Owner owner = new Owner();
+        owner.setId(id);
+        owner.setVersion(0L);
+        owner.setName("owner-" + id);
+        owner.setBirthDate(LocalDate.of(1990, 1, 15));
+        owner.setRole(Role.USER);
+        owner.setPassword("$2a$12$3Cq9vO6dM1cFQ0f0mQ0bUeH7m8q2YjzR6l8p1v9wXo4n2s5t7u9yC");
+        return owner;
+    }
+
+    static Pet pet(long id, Owner owner) {
+        Pet pet = new Pet();
+        pet.setId(id);
+        pet.setVersion(0L);
+        pet.setName("pet-" + id);
+        pet.setBirthDate(LocalDate.of(2020, 1, 1).plusDays(id % 365));
+        pet.setBreed("breed-" + id % 20);
+        pet.setColor(COLORS[(int) (id % COLORS.length)]);
+        pet.setOwner(owner);
+        return pet;
+    }
+
+    static Pet petWithFriends(int friends) {
+        Owner owner = owner(1);
+        Pet pet = pet(1, owner);
+        List<Pet> friendList = new ArrayList<>(friends);
+        for (int i = 0; i < friends; i++) {
+            friendList.add(pet(i + 2, owner));
+        }
+        pet.setFriends(friendList);
+        return pet;
+    }
+
+    static Owner ownerWithPets(int pets) {
+        Owner owner = owner(1);
+        List<Pet> petList = new ArrayList<>(pets);
+        for (int i = 0; i < pets; i++) {
+            petList.add(pet(i + 1, owner));
+        }
+        owner.setPets(petList);
+        return owner;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.gerilovich.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gerilovich.dto.OwnerDto;
+import ru.gerilovich.mappers.OwnerMapper;
+import ru.gerilovich.models.Owner;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OwnerMapperBenchmark {
+    @Param({"1", "100", "5000"})
+    private int pets;
+
+    private final OwnerMapper ownerMapper = new OwnerMapper();
+    private Owner owner;
+
+    @Setup
+    public void setUp() {
+        owner = Graphs.ownerWithPets(pets);
+    }
+
+    @Benchmark
+    public OwnerDto toDto() {
+        return ownerMapper.toDto(owner);
+    }
+}
@@ -0,0 +1,129 @@
+package ru.gerilovich.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import ru.gerilovich.Main;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.PetImportService;
+import ru.gerilovich.services.PetService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link PetService#getPetsWithFilter} against the full application context on in-memory H2,
+ * so the numbers include the query, the friend collection loads and the mapping of a page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PetFilterBenchmark {
+    private static final int OWNERS = 20;
+    private static final int PETS_PER_OWNER = 250;
+    private static final int FRIENDS_PER_PET = 10;
+    private static final int PAGE_SIZE = 20;
+
+    private ConfigurableApplicationContext context;
+    private PetService petService;
+    private Long ownerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmarks;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false")
+                .run();
+        petService = context.getBean(PetService.class);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Every owner gets a first batch of pets without friends and a second batch befriending the first.
+    private void seed() {
+        OwnerDao ownerDao = context.getBean(OwnerDao.class);
+        PetImportService petImportService = context.getBean(PetImportService.class);
+        Random random = new Random(42);
+        Color[] colors = Color.values();
+        for (int o = 0; o < OWNERS; o++) {
+            Owner owner = new Owner();
+            owner.setName("owner-" + o);
+            owner.setBirthDate(LocalDate.of(1990, 1, 15));
+            owner.setRole(Role.USER);
+            owner.setPassword("password");
+            owner.setPets(new ArrayList<>());
+            Long id = ownerDao.save(owner).getId();
+            if (ownerId == null) {
+                ownerId = id;
+            }
+
+            int half = PETS_PER_OWNER / 2;
+            List<PetDto> pets = new ArrayList<>(half);
+            for (int i = 0; i < half; i++) {
+                pets.add(new PetDto("pet-" + o + "-" + i, LocalDate.of(2020, 1, 1).plusDays(i % 365),
+                        "breed-" + i % 20, colors[i % colors.length], id, new ArrayList<>()));
+            }
+            petImportService.importPets(pets.iterator(), 500);
+            List<Long> firstBatch = ownerDao.getPetsByOwnerId(id).stream().map(Pet::getId).toList();
+
+            pets.clear();
+            for (int i = half; i < PETS_PER_OWNER; i++) {
+                List<Long> friendIds = random.ints(FRIENDS_PER_PET, 0, firstBatch.size())
+                        .distinct()
+                        .mapToObj(firstBatch::get)
+                        .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+                pets.add(new PetDto("pet-" + o + "-" + i, LocalDate.of(2020, 1, 1).plusDays(i % 365),
+                        "breed-" + i % 20, colors[i % colors.length], id, friendIds));
+            }
+            petImportService.importPets(pets.iterator(), 500);
+        }
+    }
+
+    @Benchmark
+    public Page<PetDto> byBreed() {
+        return petService.getPetsWithFilter(0, PAGE_SIZE, null, null, "breed-7", null, null, null);
+    }
+
+    @Benchmark
+    public Page<PetDto> byColor() {
+        return petService.getPetsWithFilter(0, PAGE_SIZE, null, null, null, Color.BLACK, null, null);
+    }
+
+    @Benchmark
+    public Page<PetDto> byOwnerAndBreed() {
+        return petService.getPetsWithFilter(0, PAGE_SIZE, null, null, "breed-3", null, ownerId, null);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.gerilovich.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.mappers.PetMapper;
+import ru.gerilovich.models.Pet;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PetMapperBenchmark {
+    @Param({"0", "10", "1000"})
+    private int friends;
+
+    private final PetMapper petMapper = new PetMapper();
+    private Pet pet;
+
+    @Setup
+    public void setUp() {
+        pet = Graphs.petWithFriends(friends);
+    }
+
+    @Benchmark
+    public PetDto toDto() {
+        return petMapper.toDto(pet);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.gerilovich.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.gerilovich.dto.OwnerDto;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.mappers.OwnerMapper;
+import ru.gerilovich.mappers.PetMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Writes response DTOs with an object mapper configured the way Spring Boot configures the one
+ * behind the REST controllers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"0", "10", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private PetDto pet;
+    private OwnerDto owner;
+    private List<PetDto> page;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        PetMapper petMapper = new PetMapper();
+        pet = petMapper.toDto(Graphs.petWithFriends(size));
+        owner = new OwnerMapper().toDto(Graphs.ownerWithPets(size));
+        page = LongStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> petMapper.toDto(Graphs.petWithFriends(size)))
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] pet() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(pet);
+    }
+
+    @Benchmark
+    public byte[] owner() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(owner);
+    }
+
+    @Benchmark
+    public byte[] petPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
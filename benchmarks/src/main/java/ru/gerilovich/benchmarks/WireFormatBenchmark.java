@@ -0,0 +1,136 @@
+package ru.gerilovich.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import ru.gerilovich.config.WireFormatConfig;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.mappers.PetMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Compares the response formats through the same message converters the controllers use: a page
+ * of pets written and a single pet read back. Each reports the size of its payload as the
+ * {@code bytes} secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final int PAGE_SIZE = 20;
+    private static final Type PET_LIST = ResolvableType.forClassWithGenerics(List.class, PetDto.class).getType();
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    private String format;
+
+    @Param({"10", "1000"})
+    private int friends;
+
+    private GenericHttpMessageConverter<Object> converter;
+    private List<PetDto> page;
+    private byte[] pet;
+
+    @Setup
+    public void setUp() throws IOException {
+        converter = converter(format);
+        PetMapper petMapper = new PetMapper();
+        page = LongStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> petMapper.toDto(Graphs.petWithFriends(friends)))
+                .toList();
+        pet = write(petMapper.toDto(Graphs.petWithFriends(friends)), PetDto.class);
+    }
+
+    @Benchmark
+    public byte[] writePage(Payload payload) throws IOException {
+        byte[] body = write(page, PET_LIST);
+        payload.bytes = body.length;
+        return body;
+    }
+
+    @Benchmark
+    public Object readPet(Payload payload) throws IOException {
+        payload.bytes = pet.length;
+        return converter.read(PetDto.class, null, new Input(pet));
+    }
+
+    /** The size of the last message, reported as is rather than as a rate. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+        public long bytes;
+    }
+
+    private byte[] write(Object value, Type type) throws IOException {
+        Output output = new Output();
+        converter.write(value, type, null, output);
+        return output.body.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GenericHttpMessageConverter<Object> converter(String format) {
+        WireFormatConfig config = new WireFormatConfig(Jackson2ObjectMapperBuilder.json());
+        Object converter = switch (format) {
+            case "json" -> new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build());
+            case "cbor" -> config.cborHttpMessageConverter(Jackson2ObjectMapperBuilder.json());
+            case "smile" -> config.smileHttpMessageConverter(Jackson2ObjectMapperBuilder.json());
+            case "protobuf" -> WireFormatConfig.protobufConverter(Jackson2ObjectMapperBuilder.json());
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        return (GenericHttpMessageConverter<Object>) converter;
+    }
+
+    private static final class Output implements HttpOutputMessage {
+        private final HttpHeaders headers = new HttpHeaders();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private record Input(byte[] bytes) implements HttpInputMessage {
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return new HttpHeaders();
+        }
+    }
+}
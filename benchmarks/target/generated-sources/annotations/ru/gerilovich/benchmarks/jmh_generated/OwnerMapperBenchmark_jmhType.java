@@ -0,0 +1,4 @@
+package ru.gerilovich.benchmarks.jmh_generated;
+public class OwnerMapperBenchmark_jmhType extends OwnerMapperBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package ru.gerilovich.benchmarks.jmh_generated;
+public class PetFilterBenchmark_jmhType extends PetFilterBenchmark_jmhType_B3 {
+}
+
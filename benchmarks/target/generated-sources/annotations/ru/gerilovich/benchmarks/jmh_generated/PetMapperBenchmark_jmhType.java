@@ -0,0 +1,4 @@
+package ru.gerilovich.benchmarks.jmh_generated;
+public class PetMapperBenchmark_jmhType extends PetMapperBenchmark_jmhType_B3 {
+}
+
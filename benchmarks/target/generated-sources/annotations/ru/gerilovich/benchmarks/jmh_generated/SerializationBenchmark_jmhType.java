@@ -0,0 +1,4 @@
+package ru.gerilovich.benchmarks.jmh_generated;
+public class SerializationBenchmark_jmhType extends SerializationBenchmark_jmhType_B3 {
+}
+
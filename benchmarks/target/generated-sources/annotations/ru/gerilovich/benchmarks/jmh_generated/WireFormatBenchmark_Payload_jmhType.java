@@ -0,0 +1,4 @@
+package ru.gerilovich.benchmarks.jmh_generated;
+public class WireFormatBenchmark_Payload_jmhType extends WireFormatBenchmark_Payload_jmhType_B3 {
+}
+
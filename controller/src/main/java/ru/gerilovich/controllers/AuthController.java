@@ -0,0 +1,24 @@
+package ru.gerilovich.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.gerilovich.dto.AccessTokenDto;
+import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.auth.AccessTokenService;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/auth")
+public class AuthController {
+    private final AccessTokenService accessTokenService;
+
+    @PostMapping("/token")
+    @PreAuthorize("isAuthenticated()")
+    public AccessTokenDto issueToken(@AuthenticationPrincipal CustomUserDetails principal) {
+        return accessTokenService.issue(principal);
+    }
+}
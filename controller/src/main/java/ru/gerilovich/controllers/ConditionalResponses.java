@@ -0,0 +1,26 @@
+package ru.gerilovich.controllers;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Conditional GETs of endpoints whose body is negotiated from the Accept header. The version-based tag
+ * is the same for every representation, so it is sent weak, and caches are told the body varies with
+ * Accept so they don't answer a protobuf request with a cached JSON body.
+ */
+final class ConditionalResponses {
+    private ConditionalResponses() {
+    }
+
+    static boolean checkNotModified(WebRequest request, String etag) {
+        if (request instanceof NativeWebRequest nativeRequest) {
+            HttpServletResponse response = nativeRequest.getNativeResponse(HttpServletResponse.class);
+            if (response != null) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            }
+        }
+        return request.checkNotModified(etag == null ? null : "W/" + etag);
+    }
+}
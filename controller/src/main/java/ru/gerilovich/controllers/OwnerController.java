@@ -1,20 +1,35 @@
 package ru.gerilovich.controllers;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.parameters.P;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.gerilovich.dto.BulkChunkResultDto;
+import ru.gerilovich.dto.CursorPageDto;
 import ru.gerilovich.dto.OwnerDto;
+import ru.gerilovich.dto.OwnerPatchDto;
 import ru.gerilovich.models.Role;
+import ru.gerilovich.services.OwnerImportService;
 import ru.gerilovich.services.OwnerService;
+import ru.gerilovich.services.pagination.KeysetSort;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Validated
@@ -23,6 +38,8 @@ import java.util.List;
 public class OwnerController {
 
     private final OwnerService ownerService;
+    private final OwnerImportService ownerImportService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -33,18 +50,53 @@ public class OwnerController {
         return createdOwner.getId();
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<BulkChunkResultDto> importOwners(
+            InputStream body,
+            @RequestParam(name = "chunkSize", defaultValue = "${app.import.chunk-size:1000}")
+            @Min(value = 1, message = "Chunk size must be at least 1")
+            @Max(value = 10000, message = "Chunk size must be at most 10000") int chunkSize) throws IOException {
+        try (MappingIterator<OwnerDto> owners = objectMapper.readerFor(OwnerDto.class).readValues(body)) {
+            return ownerImportService.importOwners(owners, chunkSize);
+        }
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("#id == authentication.principal.id or hasRole('ADMIN')")
-    public OwnerDto getOwnerById(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") @P("id") Long id) {
+    public OwnerDto getOwnerById(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") @P("id") Long id,
+                                 WebRequest request) {
+        if (ConditionalResponses.checkNotModified(request, ownerService.getOwnerETag(id))) {
+            return null;
+        }
         return ownerService.getById(id);
     }
 
+    // ?fields=id,name selects only those columns, pets are only read when requested.
+    @GetMapping(value = "/{id}", params = "fields")
+    @PreAuthorize("#id == authentication.principal.id or hasRole('ADMIN')")
+    public Map<String, Object> getOwnerFieldsById(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") @P("id") Long id,
+                                                  @RequestParam(name = "fields") List<String> fields,
+                                                  WebRequest request) {
+        if (ConditionalResponses.checkNotModified(request, ownerService.getOwnerETag(id))) {
+            return null;
+        }
+        return ownerService.getById(id, fields);
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("#id == authentication.principal.id or hasRole('ADMIN')")
     public OwnerDto updateOwner(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") @P("id") Long id, @RequestBody OwnerDto ownerDto) {
         return ownerService.update(id, ownerDto);
     }
 
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @PreAuthorize("#id == authentication.principal.id or hasRole('ADMIN')")
+    public ResponseEntity<Void> patchOwner(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") @P("id") Long id,
+                                           @RequestBody OwnerPatchDto patch) {
+        return ResponseEntity.noContent().eTag(ownerService.patch(id, patch)).build();
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @PreAuthorize("#id == authentication.principal.id or hasRole('ADMIN')")
@@ -71,6 +123,12 @@ public class OwnerController {
         return ownerService.getAll();
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StreamingResponseBody> streamOwners() {
+        return NdjsonResponses.<OwnerDto>stream(objectMapper, ownerService::forEachOwner);
+    }
+
     @GetMapping("/filter")
     @PreAuthorize("isAuthenticated()")
     public Page<OwnerDto> getOwnersWithFilter(
@@ -78,9 +136,45 @@ public class OwnerController {
             @RequestParam(name = "size", defaultValue = "5") @Min(value = 1, message = "Page size must be at least 1") int size,
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "birthdate", required = false) LocalDate birthDate,
-            @RequestParam(value = "petIds", required = false) List<@Positive(message = "ID must be a positive number") Long> petIds) {
+            @RequestParam(value = "petIds", required = false) List<@Positive(message = "ID must be a positive number") Long> petIds,
+            WebRequest request) {
 
+        if (ConditionalResponses.checkNotModified(request, ownerService.getOwnersWithFilterETag(page, size, name, birthDate, petIds))) {
+            return null;
+        }
         return ownerService.getOwnersWithFilter(page, size, name, birthDate, petIds);
 
     }
+
+    @GetMapping(value = "/filter", params = "fields")
+    @PreAuthorize("isAuthenticated()")
+    public Page<Map<String, Object>> getOwnerFieldsWithFilter(
+            @RequestParam(name = "page", defaultValue = "0") @Min(value = 0, message = "Page number must be positive") int page,
+            @RequestParam(name = "size", defaultValue = "5") @Min(value = 1, message = "Page size must be at least 1") int size,
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "birthdate", required = false) LocalDate birthDate,
+            @RequestParam(value = "petIds", required = false) List<@Positive(message = "ID must be a positive number") Long> petIds,
+            @RequestParam(name = "fields") List<String> fields,
+            WebRequest request) {
+
+        if (ConditionalResponses.checkNotModified(request, ownerService.getOwnersWithFilterETag(page, size, name, birthDate, petIds))) {
+            return null;
+        }
+        return ownerService.getOwnersWithFilter(page, size, name, birthDate, petIds, fields);
+    }
+
+    @GetMapping("/filter/cursor")
+    @PreAuthorize("isAuthenticated()")
+    public CursorPageDto<OwnerDto> getOwnersAfterCursor(
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "size", defaultValue = "5")
+            @Min(value = 1, message = "Page size must be at least 1")
+            @Max(value = 1000, message = "Page size must be at most 1000") int size,
+            @RequestParam(name = "sort", defaultValue = "ID") KeysetSort sort,
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "birthdate", required = false) LocalDate birthDate,
+            @RequestParam(value = "petIds", required = false) List<@Positive(message = "ID must be a positive number") Long> petIds) {
+
+        return ownerService.getOwnersAfter(after, size, sort, name, birthDate, petIds);
+    }
 }
@@ -1,20 +1,43 @@
 package ru.gerilovich.controllers;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.parameters.P;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.gerilovich.dto.BulkChunkResultDto;
+import ru.gerilovich.dto.CursorPageDto;
+import ru.gerilovich.dto.FriendNeighbourhoodDto;
+import ru.gerilovich.dto.FriendPathDto;
 import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.dto.PetPatchDto;
+import ru.gerilovich.dto.PetRecommendationDto;
 import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.PetImportService;
 import ru.gerilovich.services.PetService;
+import ru.gerilovich.services.graph.FriendGraphService;
+import ru.gerilovich.services.pagination.KeysetSort;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Validated
@@ -22,6 +45,9 @@ import java.util.List;
 @RequestMapping("/api/pets")
 public class PetController {
     private final PetService petService;
+    private final PetImportService petImportService;
+    private final FriendGraphService friendGraphService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -30,30 +56,113 @@ public class PetController {
         return petService.save(petDto).getId();
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<BulkChunkResultDto> importPets(
+            InputStream body,
+            @RequestParam(name = "chunkSize", defaultValue = "${app.import.chunk-size:1000}")
+            @Min(value = 1, message = "Chunk size must be at least 1")
+            @Max(value = 10000, message = "Chunk size must be at most 10000") int chunkSize) throws IOException {
+        try (MappingIterator<PetDto> pets = objectMapper.readerFor(PetDto.class).readValues(body)) {
+            return petImportService.importPets(pets, chunkSize);
+        }
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
-    public PetDto getPetById(@PathVariable(name = "id") @P("id") Long id) {
+    public PetDto getPetById(@PathVariable(name = "id") @P("id") Long id, WebRequest request) {
+        if (ConditionalResponses.checkNotModified(request, petService.getPetETag(id))) {
+            return null;
+        }
         return petService.getById(id);
     }
 
+    // ?fields=id,name selects only those columns, friends and owner are only read when requested.
+    @GetMapping(value = "/{id}", params = "fields")
+    @PreAuthorize("isAuthenticated()")
+    public Map<String, Object> getPetFieldsById(@PathVariable(name = "id") @P("id") Long id,
+                                                @RequestParam(name = "fields") List<String> fields,
+                                                WebRequest request) {
+        if (ConditionalResponses.checkNotModified(request, petService.getPetETag(id))) {
+            return null;
+        }
+        return petService.getById(id, fields);
+    }
+
+    @GetMapping("/{id}/friends")
+    @PreAuthorize("isAuthenticated()")
+    public FriendNeighbourhoodDto getFriendNeighbourhood(
+            @PathVariable(name = "id") @Positive(message = "ID must be a positive number") Long id,
+            @RequestParam(name = "hops", defaultValue = "2")
+            @Min(value = 1, message = "Hops must be at least 1")
+            @Max(value = 6, message = "Hops must be at most 6") int hops) {
+        return friendGraphService.getNeighbourhood(id, hops);
+    }
+
+    @GetMapping("/{id}/friends/path/{otherId}")
+    @PreAuthorize("isAuthenticated()")
+    public FriendPathDto getFriendPath(
+            @PathVariable(name = "id") @Positive(message = "ID must be a positive number") Long id,
+            @PathVariable(name = "otherId") @Positive(message = "ID must be a positive number") Long otherId) {
+        return friendGraphService.getShortestPath(id, otherId);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    @PreAuthorize("isAuthenticated()")
+    public List<PetRecommendationDto> getFriendRecommendations(
+            @PathVariable(name = "id") @Positive(message = "ID must be a positive number") Long id,
+            @RequestParam(name = "limit", defaultValue = "10")
+            @Min(value = 1, message = "Limit must be at least 1")
+            @Max(value = 100, message = "Limit must be at most 100") int limit,
+            @RequestParam(name = "breedBoost", defaultValue = "0")
+            @PositiveOrZero(message = "Boost must not be negative") double breedBoost,
+            @RequestParam(name = "colorBoost", defaultValue = "0")
+            @PositiveOrZero(message = "Boost must not be negative") double colorBoost) {
+        return friendGraphService.getRecommendations(id, limit, breedBoost, colorBoost);
+    }
+
+    // Ownership of the pet is checked by the service on the row it updates or deletes, see ownerScope.
     @PutMapping("/{id}")
-    @PreAuthorize("@petService.getIsPetOwner(#id, authentication.principal.id) or hasRole('ADMIN')")
-    public PetDto updatePet(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") @P("id") Long id, @RequestBody PetDto petDto) {
-        return petService.update(id, petDto);
+    @PreAuthorize("isAuthenticated()")
+    public PetDto updatePet(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") Long id,
+                            @RequestBody PetDto petDto,
+                            @AuthenticationPrincipal CustomUserDetails principal) {
+        return petService.update(id, petDto, ownerScope(principal));
+    }
+
+    // JSON Merge Patch: absent fields are kept, null clears a field. Answers with the new ETag only,
+    // so the friends collection is not loaded unless the patch replaces it.
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Void> patchPet(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") Long id,
+                                         @RequestBody PetPatchDto patch,
+                                         @AuthenticationPrincipal CustomUserDetails principal) {
+        return ResponseEntity.noContent().eTag(petService.patch(id, patch, ownerScope(principal))).build();
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    @PreAuthorize("@petService.getIsPetOwner(#id, authentication.principal.id) or hasRole('ADMIN')")
-    public void deletePetById(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") @P("id") Long id) {
-        petService.deleteById(id);
+    @PreAuthorize("isAuthenticated()")
+    public void deletePetById(@PathVariable(name = "id") @Positive(message = "ID must be a positive number") Long id,
+                              @AuthenticationPrincipal CustomUserDetails principal) {
+        petService.deleteById(id, ownerScope(principal));
     }
 
-    @DeleteMapping
+    // Selected by the Content-Type: a body sent without application/json is routed to the filter delete
+    // below, which ignores it and answers 400 without a breed or color.
+    @DeleteMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    @PreAuthorize("@petService.getIsPetOwner(#petDto.id, authentication.principal.id) or hasRole('ADMIN')")
-    public void deletePet(@RequestBody @P("petDto") PetDto petDto) {
-        petService.deleteByEntity(petDto);
+    @PreAuthorize("isAuthenticated()")
+    public void deletePet(@RequestBody PetDto petDto, @AuthenticationPrincipal CustomUserDetails principal) {
+        petService.deleteByEntity(petDto, ownerScope(principal));
+    }
+
+    @DeleteMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public long deletePetsWithFilter(
+            @RequestParam(name = "breed", required = false) String breed,
+            @RequestParam(name = "color", required = false) Color color) {
+        return petService.deleteWithFilter(breed, color);
     }
 
     @DeleteMapping("/all")
@@ -68,6 +177,12 @@ public class PetController {
         return petService.getAll();
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StreamingResponseBody> streamPets() {
+        return NdjsonResponses.<PetDto>stream(objectMapper, petService::forEachPet);
+    }
+
     @GetMapping("/filter")
     @PreAuthorize("isAuthenticated()")
     public Page<PetDto> getPetsWithFilter(
@@ -78,9 +193,58 @@ public class PetController {
             @RequestParam(value = "breed", required = false) String breed,
             @RequestParam(value = "color", required = false) Color color,
             @RequestParam(value = "ownerId", required = false) @Positive(message = "ID must be a positive number") Long ownerId,
-            @RequestParam(value = "friendIds", required = false) List<@Positive(message = "ID must be a positive number") Long> friendIds) {
+            @RequestParam(value = "friendIds", required = false) List<@Positive(message = "ID must be a positive number") Long> friendIds,
+            WebRequest request) {
 
+        if (ConditionalResponses.checkNotModified(request, petService.getPetsWithFilterETag(page, size, name, birthDate, breed, color, ownerId, friendIds))) {
+            return null;
+        }
         return petService.getPetsWithFilter(page, size, name, birthDate, breed, color, ownerId, friendIds);
 
     }
+
+    @GetMapping(value = "/filter", params = "fields")
+    @PreAuthorize("isAuthenticated()")
+    public Page<Map<String, Object>> getPetFieldsWithFilter(
+            @RequestParam(name = "page", defaultValue = "0") @Min(value = 0, message = "Page number must be positive") int page,
+            @RequestParam(name = "size", defaultValue = "5") @Min(value = 1, message = "Page size must be at least 1") int size,
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "birthdate", required = false) LocalDate birthDate,
+            @RequestParam(value = "breed", required = false) String breed,
+            @RequestParam(value = "color", required = false) Color color,
+            @RequestParam(value = "ownerId", required = false) @Positive(message = "ID must be a positive number") Long ownerId,
+            @RequestParam(value = "friendIds", required = false) List<@Positive(message = "ID must be a positive number") Long> friendIds,
+            @RequestParam(name = "fields") List<String> fields,
+            WebRequest request) {
+
+        if (ConditionalResponses.checkNotModified(request, petService.getPetsWithFilterETag(page, size, name, birthDate, breed, color, ownerId, friendIds))) {
+            return null;
+        }
+        return petService.getPetsWithFilter(page, size, name, birthDate, breed, color, ownerId, friendIds, fields);
+    }
+
+    @GetMapping("/filter/cursor")
+    @PreAuthorize("isAuthenticated()")
+    public CursorPageDto<PetDto> getPetsAfterCursor(
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "size", defaultValue = "5")
+            @Min(value = 1, message = "Page size must be at least 1")
+            @Max(value = 1000, message = "Page size must be at most 1000") int size,
+            @RequestParam(name = "sort", defaultValue = "ID") KeysetSort sort,
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "birthdate", required = false) LocalDate birthDate,
+            @RequestParam(value = "breed", required = false) String breed,
+            @RequestParam(value = "color", required = false) Color color,
+            @RequestParam(value = "ownerId", required = false) @Positive(message = "ID must be a positive number") Long ownerId,
+            @RequestParam(value = "friendIds", required = false) List<@Positive(message = "ID must be a positive number") Long> friendIds) {
+
+        return petService.getPetsAfter(after, size, sort, name, birthDate, breed, color, ownerId, friendIds);
+    }
+
+    // Admins may change any pet, everyone else only their own.
+    private static Long ownerScope(CustomUserDetails principal) {
+        boolean admin = principal.getAuthorities().stream()
+                .anyMatch(authority -> Role.ADMIN.getRole().equals(authority.getAuthority()));
+        return admin ? null : principal.getId();
+    }
 }
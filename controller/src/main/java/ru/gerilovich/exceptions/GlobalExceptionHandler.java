@@ -1,5 +1,6 @@
 package ru.gerilovich.exceptions;
 
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.ConstraintViolationException;
 import org.springframework.http.HttpStatus;
@@ -10,6 +11,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 import ru.gerilovich.services.exceptions.DuplicateOwnerException;
+import ru.gerilovich.services.exceptions.InvalidRequestParameterException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
@@ -27,6 +29,13 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
                 .body(ex.getMessage());
     }
 
+    @ExceptionHandler({InvalidRequestParameterException.class, RuntimeJsonMappingException.class})
+    protected ResponseEntity<Object> handleInvalidParameter(Exception ex) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ex.getMessage());
+    }
+
     @ExceptionHandler(DuplicateOwnerException.class)
     protected ResponseEntity<Object> handleDuplicateOwner(Exception ex) {
         return ResponseEntity
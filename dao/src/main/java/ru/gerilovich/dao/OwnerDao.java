@@ -1,33 +1,61 @@
 package ru.gerilovich.dao;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.gerilovich.models.Owner;
 import ru.gerilovich.models.Pet;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface OwnerDao extends JpaRepository<Owner, Long> {
+public interface OwnerDao extends JpaRepository<Owner, Long>, JpaSpecificationExecutor<Owner> {
     @Query("SELECT p FROM Pet p WHERE p.owner.id = :ownerId")
     List<Pet> getPetsByOwnerId(@Param("ownerId") Long ownerId);
 
-    @Query("SELECT p FROM Pet p WHERE p.id IN :petIds")
-    List<Pet> findPetsByIds(@Param("petIds") List<Long> petIds);
-
     Page<Owner> findByName(String name, Pageable pageable);
 
     Optional<Owner> findByName(String name);
 
     boolean existsByName(String name);
 
+    @Query("SELECT o.version FROM Owner o WHERE o.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Owner o SET o.version = o.version + 1 WHERE o.id IN (SELECT p.owner.id FROM Pet p WHERE p.id IN :petIds)")
+    int incrementVersionOfOwnersOf(@Param("petIds") Collection<Long> petIds);
+
+    @Query("SELECT o.name FROM Owner o WHERE o.name IN :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
+
     Page<Owner> findByBirthDate(LocalDate birthDate, Pageable pageable);
 
-    Page<Owner> findByPetsIdIn(List<Long> petIds, Pageable pageable);
+    // Spelled out: the derived query joins the pets with an outer join, which keeps the planner from
+    // starting at the pets primary key.
+    @Query(value = "SELECT o FROM Owner o JOIN o.pets p WHERE p.id IN :petIds",
+            countQuery = "SELECT COUNT(o) FROM Owner o JOIN o.pets p WHERE p.id IN :petIds")
+    Page<Owner> findByPetsIdIn(@Param("petIds") List<Long> petIds, Pageable pageable);
+
+    @Query("SELECT p.owner.id, p.id FROM Pet p WHERE p.owner.id IN :ownerIds ORDER BY p.id")
+    List<Object[]> findPetIdsOf(@Param("ownerIds") Collection<Long> ownerIds);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o FROM Owner o")
+    Stream<Owner> streamAll();
 }
@@ -1,30 +1,92 @@
 package ru.gerilovich.dao;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.gerilovich.models.Color;
 import ru.gerilovich.models.Pet;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface PetDao extends JpaRepository<Pet, Long> {
+public interface PetDao extends JpaRepository<Pet, Long>, JpaSpecificationExecutor<Pet> {
+    // Declared by native statements whose cache entries the caller evicts by id: it names no mapped
+    // table, so Hibernate evicts no region. Without a declared space it would evict all of them.
+    String EVICTED_BY_CALLER = "evicted_by_caller";
+
     Page<Pet> findByName(String name, Pageable pageable);
 
     Page<Pet> findByBreed(String breed, Pageable pageable);
 
     Page<Pet> findByColor(Color color, Pageable pageable);
 
-    Page<Pet> findByOwnerId(Long ownerId, Pageable pageable);
+    // Spelled out: the derived queries join the association with an outer join, which keeps the planner
+    // from starting at the index on the joined side.
+    @Query("SELECT p FROM Pet p WHERE p.owner.id = :ownerId")
+    Page<Pet> findByOwnerId(@Param("ownerId") Long ownerId, Pageable pageable);
 
     Page<Pet> findByBirthDate(LocalDate birthDate, Pageable pageable);
 
-    Page<Pet> findByFriendsIdIn(List<Long> petIds, Pageable pageable);
+    @Query(value = "SELECT p FROM Pet p JOIN p.friends f WHERE f.id IN :petIds",
+            countQuery = "SELECT COUNT(p) FROM Pet p JOIN p.friends f WHERE f.id IN :petIds")
+    Page<Pet> findByFriendsIdIn(@Param("petIds") List<Long> petIds, Pageable pageable);
 
     Page<Pet> findByNameAndBirthDate(String name, LocalDate birthDate, Pageable pageable);
 
-    boolean existsByIdAndOwnerId(Long id, Long ownerId);
+    @Query("SELECT p.version FROM Pet p WHERE p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("SELECT DISTINCT p FROM Pet p JOIN p.friends f WHERE f.id IN :friendIds")
+    List<Pet> findReferrersOf(@Param("friendIds") Collection<Long> friendIds);
+
+    @Query("SELECT DISTINCT p.id FROM Pet p JOIN p.friends f WHERE f.id IN :friendIds")
+    List<Long> findReferrerIdsOf(@Param("friendIds") Collection<Long> friendIds);
+
+    @Query("SELECT p.id, f.id FROM Pet p JOIN p.friends f WHERE p.id IN :petIds ORDER BY f.id")
+    List<Object[]> findFriendIdsOf(@Param("petIds") Collection<Long> petIds);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Pet p")
+    Stream<Pet> streamAll();
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = EVICTED_BY_CALLER))
+    @Query(value = "DELETE FROM pet_friends WHERE friend_id = :petId AND pet_id IN (:friendIds)", nativeQuery = true)
+    int deleteFriendEdgesTo(@Param("petId") Long petId, @Param("friendIds") Collection<Long> friendIds);
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = EVICTED_BY_CALLER))
+    @Query(value = "DELETE FROM pet_friends WHERE friend_id IN (:petIds)", nativeQuery = true)
+    int deleteAllFriendEdgesTo(@Param("petIds") Collection<Long> petIds);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = EVICTED_BY_CALLER))
+    @Query(value = "UPDATE pets SET version = version + 1 WHERE id IN (:petIds)", nativeQuery = true)
+    int incrementVersions(@Param("petIds") Collection<Long> petIds);
+
+    @Modifying
+    @Query("UPDATE Pet p SET p.version = p.version + 1 WHERE p.id NOT IN :petIds "
+            + "AND p.id IN (SELECT q.id FROM Pet q JOIN q.friends f WHERE f.id IN :petIds)")
+    int incrementVersionOfReferrersOf(@Param("petIds") Collection<Long> petIds);
+
+    // Bulk deletes drop the whole Pet.friends region rather than look up every affected collection.
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "pet_friends"))
+    @Query(value = "DELETE FROM pet_friends WHERE pet_id IN (:petIds) OR friend_id IN (:petIds)", nativeQuery = true)
+    int deleteAllFriendEdgesOf(@Param("petIds") Collection<Long> petIds);
 }
@@ -0,0 +1,35 @@
+package ru.gerilovich.dao.specifications;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * ANDs every supplied criterion into one specification, skipping null, empty string and empty
+ * collection values. The order of the criteria does not matter, the database planner picks the index.
+ */
+public final class FilterBuilder<T> {
+    private Specification<T> result = Specification.where(null);
+
+    public <V> FilterBuilder<T> add(V value, Function<V, Specification<T>> specification) {
+        if (isPresent(value)) {
+            result = result.and(specification.apply(value));
+        }
+        return this;
+    }
+
+    public Specification<T> build() {
+        return result;
+    }
+
+    private static boolean isPresent(Object value) {
+        if (value instanceof String string) {
+            return !string.isEmpty();
+        }
+        if (value instanceof Collection<?> collection) {
+            return !collection.isEmpty();
+        }
+        return value != null;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.gerilovich.dao.specifications;
+
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.jpa.domain.Specification;
+
+public final class KeysetSpecifications {
+    public static final String ID = "id";
+
+    private KeysetSpecifications() {
+    }
+
+    /**
+     * Orders by {@code attribute NULLS LAST, id}, the order {@link #after} seeks in. Spring Data cannot
+     * pass null precedence to a criteria query, so the order is set here and the query must be unsorted.
+     * Ascending with nulls last is also the order of a default PostgreSQL index on {@code (attribute, id)}.
+     */
+    public static <T> Specification<T> orderedBy(String attribute) {
+        return (root, query, cb) -> {
+            if (ID.equals(attribute)) {
+                query.orderBy(cb.asc(root.get(ID)));
+            } else {
+                query.orderBy(((HibernateCriteriaBuilder) cb).asc(root.get(attribute), false), cb.asc(root.get(ID)));
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Seeks past the row identified by {@code (value, id)} in {@code ORDER BY attribute NULLS LAST, id},
+     * so the database can start from an index position instead of skipping an OFFSET. A null value
+     * is the position among the rows without one, which come after all others.
+     */
+    public static <T> Specification<T> after(String attribute, String value, long id) {
+        if (ID.equals(attribute)) {
+            return (root, query, cb) -> cb.greaterThan(root.<Long>get(ID), id);
+        }
+        if (value == null) {
+            return (root, query, cb) -> cb.and(
+                    cb.isNull(root.get(attribute)),
+                    cb.greaterThan(root.<Long>get(ID), id));
+        }
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.<String>get(attribute), value),
+                cb.and(
+                        cb.equal(root.get(attribute), value),
+                        cb.greaterThan(root.<Long>get(ID), id)),
+                cb.isNull(root.get(attribute)));
+    }
+}
@@ -0,0 +1,42 @@
+package ru.gerilovich.dao.specifications;
+
+import jakarta.persistence.criteria.Join;
+import org.springframework.data.jpa.domain.Specification;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public final class OwnerSpecifications {
+    private OwnerSpecifications() {
+    }
+
+    public static Specification<Owner> hasId(Long id) {
+        return (root, query, cb) -> cb.equal(root.get("id"), id);
+    }
+
+    public static Specification<Owner> hasName(String name) {
+        return (root, query, cb) -> cb.equal(root.get("name"), name);
+    }
+
+    public static Specification<Owner> hasBirthDate(LocalDate birthDate) {
+        return (root, query, cb) -> cb.equal(root.get("birthDate"), birthDate);
+    }
+
+    public static Specification<Owner> hasPetIn(Collection<Long> petIds) {
+        return (root, query, cb) -> {
+            query.distinct(true);
+            Join<Owner, Pet> pets = root.join("pets");
+            return pets.get("id").in(petIds);
+        };
+    }
+
+    public static Specification<Owner> filter(String name, LocalDate birthDate, Collection<Long> petIds) {
+        return new FilterBuilder<Owner>()
+                .add(petIds, OwnerSpecifications::hasPetIn)
+                .add(name, OwnerSpecifications::hasName)
+                .add(birthDate, OwnerSpecifications::hasBirthDate)
+                .build();
+    }
+}
@@ -0,0 +1,58 @@
+package ru.gerilovich.dao.specifications;
+
+import jakarta.persistence.criteria.Join;
+import org.springframework.data.jpa.domain.Specification;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Pet;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public final class PetSpecifications {
+    private PetSpecifications() {
+    }
+
+    public static Specification<Pet> hasId(Long id) {
+        return (root, query, cb) -> cb.equal(root.get("id"), id);
+    }
+
+    public static Specification<Pet> hasName(String name) {
+        return (root, query, cb) -> cb.equal(root.get("name"), name);
+    }
+
+    public static Specification<Pet> hasBirthDate(LocalDate birthDate) {
+        return (root, query, cb) -> cb.equal(root.get("birthDate"), birthDate);
+    }
+
+    public static Specification<Pet> hasBreed(String breed) {
+        return (root, query, cb) -> cb.equal(root.get("breed"), breed);
+    }
+
+    public static Specification<Pet> hasColor(Color color) {
+        return (root, query, cb) -> cb.equal(root.get("color"), color);
+    }
+
+    public static Specification<Pet> hasOwnerId(Long ownerId) {
+        return (root, query, cb) -> cb.equal(root.get("owner").get("id"), ownerId);
+    }
+
+    public static Specification<Pet> hasFriendIn(Collection<Long> friendIds) {
+        return (root, query, cb) -> {
+            query.distinct(true);
+            Join<Pet, Pet> friends = root.join("friends");
+            return friends.get("id").in(friendIds);
+        };
+    }
+
+    public static Specification<Pet> filter(String name, LocalDate birthDate, String breed, Color color,
+                                            Long ownerId, Collection<Long> friendIds) {
+        return new FilterBuilder<Pet>()
+                .add(ownerId, PetSpecifications::hasOwnerId)
+                .add(friendIds, PetSpecifications::hasFriendIn)
+                .add(name, PetSpecifications::hasName)
+                .add(birthDate, PetSpecifications::hasBirthDate)
+                .add(breed, PetSpecifications::hasBreed)
+                .add(color, PetSpecifications::hasColor)
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package ru.gerilovich.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccessTokenDto {
+    private String accessToken;
+    private String tokenType;
+    private long expiresIn;
+}
@@ -0,0 +1,17 @@
+package ru.gerilovich.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkChunkResultDto {
+    private int chunk;
+    private int received;
+    private int imported;
+    private String error;
+}
@@ -0,0 +1,19 @@
+package ru.gerilovich.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendNeighbourhoodDto {
+    private Long petId;
+    /** Element {@code i} holds the ids of pets {@code i + 1} friendships away. */
+    private List<List<Long>> hops = new ArrayList<>();
+}
@@ -0,0 +1,22 @@
+package ru.gerilovich.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendPathDto {
+    private Long fromPetId;
+    private Long toPetId;
+    /** Pet ids from the first pet to the second, empty when they are not connected. */
+    private List<Long> path = new ArrayList<>();
+    /** Number of friendships on the path, -1 when the pets are not connected. */
+    private int degreesOfSeparation;
+}
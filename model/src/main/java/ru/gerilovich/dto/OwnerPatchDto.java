@@ -0,0 +1,22 @@
+package ru.gerilovich.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JSON Merge Patch of an owner, with the same absent/null/value encoding as {@link PetPatchDto}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class OwnerPatchDto {
+    private Optional<String> name;
+    private Optional<LocalDate> birthDate;
+    private Optional<String> password;
+    private Optional<List<Long>> petIds;
+}
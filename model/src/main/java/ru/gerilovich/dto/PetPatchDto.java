@@ -0,0 +1,26 @@
+package ru.gerilovich.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.gerilovich.models.Color;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JSON Merge Patch of a pet: a field left out of the document is null here, a field set to null is
+ * {@link Optional#empty()}, anything else is the new value.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class PetPatchDto {
+    private Optional<String> name;
+    private Optional<LocalDate> birthDate;
+    private Optional<String> breed;
+    private Optional<Color> color;
+    private Optional<Long> owner;
+    private Optional<List<Long>> friendIds;
+}
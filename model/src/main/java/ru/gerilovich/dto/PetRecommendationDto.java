@@ -0,0 +1,17 @@
+package ru.gerilovich.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetRecommendationDto {
+    private Long petId;
+    private int mutualFriends;
+    /** Mutual friends plus the requested boosts for a matching breed or color. */
+    private double score;
+}
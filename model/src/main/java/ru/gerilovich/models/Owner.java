@@ -4,6 +4,9 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -13,16 +16,25 @@ import java.util.List;
 @Setter
 @Getter
 @Entity
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "owners")
 @Table(name = "owners")
 public class Owner {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "owners_id_seq")
+    @SequenceGenerator(name = "owners_id_seq", sequenceName = "owners_id_seq", allocationSize = 50)
     private Long id;
+
+    @Version
+    private Long version;
+
     private String name;
 
     @Column(name = "birthdate")
     private LocalDate birthDate;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "owners-pets")
     @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Pet> pets = new ArrayList<>();
 
@@ -4,6 +4,9 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -13,11 +16,19 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "pets")
 @Table(name = "pets")
 public class Pet {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pets_id_seq")
+    @SequenceGenerator(name = "pets_id_seq", sequenceName = "pets_id_seq", allocationSize = 50)
     private Long id;
+
+    @Version
+    private Long version;
+
     private String name;
 
     @Column(name = "birthdate")
@@ -32,6 +43,7 @@ public class Pet {
     @JoinColumn(name = "owner_id")
     private Owner owner;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "pets-friends")
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(
             name = "pet_friends",
@@ -0,0 +1,121 @@
+package ru.gerilovich.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import ru.gerilovich.dto.CursorPageDto;
+import ru.gerilovich.dto.OwnerDto;
+import ru.gerilovich.dto.PetDto;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes pets and owners as the protobuf messages in {@code proto/pets.proto}. Lists and
+ * pages of them are written as the matching page message. Other types are left to the JSON converter.
+ */
+public class DtoProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private final ObjectMapper objectMapper;
+    private final Map<Class<?>, Messages> messages;
+
+    public DtoProtobufHttpMessageConverter(ObjectMapper objectMapper, NativeProtobufSchema schema) {
+        super(APPLICATION_PROTOBUF);
+        this.objectMapper = objectMapper;
+        this.messages = Map.of(
+                PetDto.class, new Messages(schema.forType("Pet"), schema.forType("PetPage")),
+                OwnerDto.class, new Messages(schema.forType("Owner"), schema.forType("OwnerPage")));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return messages.containsKey(clazz);
+    }
+
+    // Asked with the raw class of a return value, where the element type of a list or page is erased:
+    // offered for any of them, canWrite with the generic type decides.
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || CursorPageDto.class.isAssignableFrom(clazz) || Iterable.class.isAssignableFrom(clazz)
+                ? getSupportedMediaTypes()
+                : List.of();
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return canRead(ResolvableType.forType(type).toClass(), mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return canWrite(mediaType) && elementType(type, clazz) != null;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readInternal(ResolvableType.forType(type).toClass(), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return objectMapper.readerFor(clazz).with(messages.get(clazz).single()).readValue(inputMessage.getBody());
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Messages message = messages.get(elementType(type, value.getClass()));
+        if (messages.containsKey(value.getClass())) {
+            objectMapper.writer(message.single()).writeValue(outputMessage.getBody(), value);
+            return;
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        if (value instanceof CursorPageDto<?> cursorPage) {
+            page.put("content", cursorPage.getContent());
+            if (cursorPage.getNextCursor() != null) {
+                page.put("nextCursor", cursorPage.getNextCursor());
+            }
+        } else if (value instanceof Page<?> offsetPage) {
+            page.put("content", offsetPage.getContent());
+            page.put("totalElements", offsetPage.getTotalElements());
+            page.put("number", offsetPage.getNumber());
+            page.put("size", offsetPage.getSize());
+        } else {
+            List<Object> content = new ArrayList<>();
+            ((Iterable<?>) value).forEach(content::add);
+            page.put("content", content);
+        }
+        objectMapper.writer(message.page()).writeValue(outputMessage.getBody(), page);
+    }
+
+    // The DTO class carried by a DTO, a list or page of DTOs or a cursor page of DTOs, null for anything else.
+    private Class<?> elementType(Type type, Class<?> clazz) {
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        Class<?> raw = resolved.toClass();
+        if (messages.containsKey(raw)) {
+            return raw;
+        }
+        ResolvableType element;
+        if (CursorPageDto.class.isAssignableFrom(raw)) {
+            element = resolved.as(CursorPageDto.class).getGeneric(0);
+        } else if (Iterable.class.isAssignableFrom(raw)) {
+            element = resolved.as(Iterable.class).getGeneric(0);
+        } else {
+            return null;
+        }
+        return messages.containsKey(element.toClass()) ? element.toClass() : null;
+    }
+
+    private record Messages(ProtobufSchema single, ProtobufSchema page) {
+    }
+}
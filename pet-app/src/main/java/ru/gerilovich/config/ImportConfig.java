@@ -0,0 +1,17 @@
+package ru.gerilovich.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class ImportConfig {
+
+    // BCrypt is CPU bound, so more workers than cores only adds contention.
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool passwordHashingPool(@Value("${app.import.hashing-parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,43 @@
+package ru.gerilovich.config;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+@Configuration
+public class SecondLevelCacheConfig {
+    // Held here, the cache manager only keeps a weak reference to it.
+    private final ClassLoader cacheClassLoader = new ClassLoader(getClass().getClassLoader()) {
+    };
+
+    // The caching provider hands out one CacheManager per configuration and class loader for the whole
+    // JVM. Every session factory in it, e.g. one per test context, would share the cached entities of
+    // its own database, and the first one to close would close the caches of all. Each context gets its
+    // own, which Hibernate closes with the session factory.
+    @Bean
+    public HibernatePropertiesCustomizer cacheManagerCustomizer() {
+        return properties -> {
+            Object provider = properties.get(ConfigSettings.PROVIDER);
+            Object configName = properties.get(ConfigSettings.CONFIG_URI);
+            if (provider == null || configName == null) {
+                return;
+            }
+            CachingProvider cachingProvider = Caching.getCachingProvider(provider.toString());
+            URL config = cacheClassLoader.getResource(configName.toString());
+            if (config == null) {
+                throw new IllegalStateException("Second-level cache configuration not found: " + configName);
+            }
+            try {
+                properties.put(ConfigSettings.CACHE_MANAGER, cachingProvider.getCacheManager(config.toURI(), cacheClassLoader));
+            } catch (URISyntaxException e) {
+                throw new IllegalStateException("Invalid second-level cache configuration location: " + config, e);
+            }
+        };
+    }
+}
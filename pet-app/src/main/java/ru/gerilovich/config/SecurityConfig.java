@@ -1,10 +1,15 @@
 package ru.gerilovich.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -12,7 +17,18 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import ru.gerilovich.services.auth.AccessTokenService;
+import ru.gerilovich.services.auth.AuthenticationCache;
+import ru.gerilovich.services.auth.BoundedPasswordEncoder;
+import ru.gerilovich.services.auth.CachingAuthenticationProvider;
 import ru.gerilovich.services.auth.OwnerDetailsService;
+import ru.gerilovich.services.auth.TimedPasswordEncoder;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
@@ -20,11 +36,14 @@ import static org.springframework.security.config.Customizer.withDefaults;
 @EnableWebSecurity
 @EnableMethodSecurity
 @RequiredArgsConstructor
+@Slf4j
 public class SecurityConfig {
+    private static final String TOKEN_ENDPOINT = "/api/auth/token";
+
     private final OwnerDetailsService ownerDetailsService;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, AccessTokenService accessTokenService) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.disable())
@@ -42,6 +61,8 @@ public class SecurityConfig {
                             response.getWriter().write("Forbidden");
                         })
                 )
+                .addFilterBefore(new BearerTokenAuthenticationFilter(accessTokenService, TOKEN_ENDPOINT),
+                        BasicAuthenticationFilter.class)
                 .httpBasic(withDefaults())
                 .formLogin(withDefaults())
                 .logout(withDefaults());
@@ -50,15 +71,53 @@ public class SecurityConfig {
     }
 
     @Bean
-    protected DaoAuthenticationProvider daoAuthenticationProvider() {
+    protected AuthenticationProvider authenticationProvider(AuthenticationCache authenticationCache,
+                                                            PasswordEncoder passwordEncoder) {
+        return new CachingAuthenticationProvider(daoAuthenticationProvider(passwordEncoder), authenticationCache);
+    }
+
+    @Bean
+    public AuthenticationCache authenticationCache(
+            @Value("${app.auth.cache.ttl:5m}") Duration ttl,
+            @Value("${app.auth.cache.max-size:10000}") long maxSize,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        AuthenticationCache cache = new AuthenticationCache(ttl, maxSize);
+        meterRegistry.ifAvailable(cache::bindTo);
+        return cache;
+    }
+
+    @Bean
+    public AccessTokenService accessTokenService(
+            @Value("${app.auth.token.secret:}") String secret,
+            @Value("${app.auth.token.ttl:15m}") Duration ttl) {
+        byte[] key;
+        if (secret.isBlank()) {
+            log.warn("app.auth.token.secret is not set, access tokens will only be valid on this instance until restart");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = Base64.getDecoder().decode(secret);
+        }
+        return new AccessTokenService(key, ttl, Clock.systemUTC());
+    }
+
+    private DaoAuthenticationProvider daoAuthenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
-        provider.setPasswordEncoder(passwordEncoder());
+        provider.setPasswordEncoder(passwordEncoder);
         provider.setUserDetailsService(ownerDetailsService);
         return provider;
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(@Value("${app.auth.hashing.max-concurrent:0}") int maxConcurrent,
+                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        int permits = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(12);
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            // Timed inside the bound, so the timer shows hashing cost and not the wait for a permit.
+            bcrypt = new TimedPasswordEncoder(bcrypt, registry);
+        }
+        return new BoundedPasswordEncoder(bcrypt, permits);
     }
 }
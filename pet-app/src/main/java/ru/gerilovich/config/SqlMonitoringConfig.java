@@ -0,0 +1,37 @@
+package ru.gerilovich.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import ru.gerilovich.services.sql.SqlStatementCounter;
+
+@Configuration
+public class SqlMonitoringConfig {
+
+    @Bean
+    public SqlStatementCounter sqlStatementCounter() {
+        return new SqlStatementCounter();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(SqlStatementCounter sqlStatementCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, sqlStatementCounter);
+    }
+
+    // First in the chain, so statements issued while authenticating count towards the request.
+    @Bean
+    public FilterRegistrationBean<StatementCountingFilter> statementCountingFilter(
+            SqlStatementCounter sqlStatementCounter,
+            @Value("${app.sql.max-statements-per-request:25}") int maxStatements,
+            @Value("${app.sql.max-repeats-per-request:5}") int maxRepeats,
+            @Value("${app.sql.fail-on-violation:false}") boolean failOnViolation) {
+        FilterRegistrationBean<StatementCountingFilter> registration = new FilterRegistrationBean<>(
+                new StatementCountingFilter(sqlStatementCounter, maxStatements, maxRepeats, failOnViolation));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.gerilovich.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.gerilovich.services.exceptions.StatementLimitExceededException;
+import ru.gerilovich.services.sql.SqlStatementCounter;
+import ru.gerilovich.services.sql.StatementCount;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Counts the statements each request issues and reports requests over the limits, which usually
+ * means a lazy collection walked row by row. Work handed to another thread, such as NDJSON exports,
+ * is not counted.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class StatementCountingFilter extends OncePerRequestFilter {
+    private final SqlStatementCounter statementCounter;
+    private final int maxStatements;
+    private final int maxRepeats;
+    private final boolean failOnViolation;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Optional<String> violation;
+        try (StatementCount count = statementCounter.open()) {
+            filterChain.doFilter(request, response);
+            violation = count.violation(maxStatements, maxRepeats);
+        }
+        if (violation.isPresent()) {
+            String message = request.getMethod() + " " + request.getRequestURI() + ": " + violation.get();
+            if (failOnViolation) {
+                throw new StatementLimitExceededException(message);
+            }
+            log.warn("Too many SQL statements for {}", message);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.gerilovich.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Binary representations for service-to-service clients, picked with the Accept and Content-Type
+ * headers: CBOR and Smile for every response and request body, protobuf for pets and owners.
+ * JSON stays the default when the client accepts anything.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+    private final DtoProtobufHttpMessageConverter protobufConverter;
+
+    public WireFormatConfig(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.protobufConverter = protobufConverter(objectMapperBuilder);
+    }
+
+    // Replace Spring's defaults for these media types, so they share the settings of the JSON mapper.
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        return new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        return new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.factory(new SmileFactory()).build());
+    }
+
+    // Appended rather than declared as a bean, which would put it ahead of JSON for Accept: */*.
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(protobufConverter);
+    }
+
+    public static DtoProtobufHttpMessageConverter protobufConverter(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        try {
+            return new DtoProtobufHttpMessageConverter(objectMapperBuilder.factory(new ProtobufFactory()).build(),
+                    ProtobufSchemaLoader.std.loadNative(new ClassPathResource("proto/pets.proto").getURL()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load proto/pets.proto", e);
+        }
+    }
+}
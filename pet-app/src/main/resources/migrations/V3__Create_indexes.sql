@@ -0,0 +1,12 @@
+CREATE UNIQUE INDEX IF NOT EXISTS ux_owners_name ON owners (name);
+CREATE INDEX IF NOT EXISTS idx_owners_birthdate ON owners (birthdate);
+
+CREATE INDEX IF NOT EXISTS idx_pets_name_birthdate ON pets (name, birthdate);
+-- Keyset pages sorted by name seek and read in (name, id) order. Owner names are unique, ux_owners_name serves them.
+CREATE INDEX IF NOT EXISTS idx_pets_name_id ON pets (name, id);
+CREATE INDEX IF NOT EXISTS idx_pets_birthdate ON pets (birthdate);
+CREATE INDEX IF NOT EXISTS idx_pets_breed ON pets (breed);
+CREATE INDEX IF NOT EXISTS idx_pets_color ON pets (color);
+CREATE INDEX IF NOT EXISTS idx_pets_owner_id ON pets (owner_id);
+
+CREATE INDEX IF NOT EXISTS idx_pet_friends_friend_id ON pet_friends (friend_id, pet_id);
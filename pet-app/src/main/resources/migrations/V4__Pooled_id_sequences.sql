@@ -0,0 +1,4 @@
+-- Pet and Owner ids are allocated by Hibernate's pooled optimizer in blocks of 50,
+-- which keeps JDBC insert batching enabled. SERIAL defaults keep working for plain SQL inserts.
+ALTER SEQUENCE pets_id_seq INCREMENT BY 50;
+ALTER SEQUENCE owners_id_seq INCREMENT BY 50;
@@ -0,0 +1,2 @@
+ALTER TABLE owners ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE pets ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,67 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.auth.AccessTokenService;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessTokenServiceTest {
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final byte[] secret = new byte[32];
+
+    private final CustomUserDetails userDetails = new CustomUserDetails(
+            30L,
+            "masha",
+            "$2a$12$JNR4LEIEn11ZTLF23QUlLu9NlaU4wEsxtzEGc4Wn7XQtD5fjm78Ye",
+            List.of(new SimpleGrantedAuthority("ROLE_USER"))
+    );
+
+    @Test
+    void verify_WhenIssued_ShouldRestorePrincipal() {
+        AccessTokenService service = serviceAt(NOW);
+        String token = service.issue(userDetails).getAccessToken();
+
+        Optional<CustomUserDetails> principal = service.verify(token);
+
+        assertTrue(principal.isPresent());
+        assertEquals(30L, principal.get().getId());
+        assertEquals("masha", principal.get().getUsername());
+        assertEquals(userDetails.getAuthorities(), principal.get().getAuthorities());
+    }
+
+    @Test
+    void verify_WhenExpired_ShouldReject() {
+        String token = serviceAt(NOW).issue(userDetails).getAccessToken();
+
+        assertTrue(serviceAt(NOW.plus(Duration.ofMinutes(16))).verify(token).isEmpty());
+    }
+
+    @Test
+    void verify_WhenSignedWithAnotherKey_ShouldReject() {
+        String token = serviceAt(NOW).issue(userDetails).getAccessToken();
+        byte[] otherSecret = Arrays.copyOf(secret, secret.length);
+        otherSecret[0] = 1;
+        AccessTokenService other = new AccessTokenService(otherSecret, Duration.ofMinutes(15),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertTrue(other.verify(token).isEmpty());
+        assertTrue(serviceAt(NOW).verify(token + "x").isEmpty());
+        assertTrue(serviceAt(NOW).verify("garbage").isEmpty());
+    }
+
+    private AccessTokenService serviceAt(Instant now) {
+        return new AccessTokenService(secret, Duration.ofMinutes(15), Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,34 @@
+package ru.gerilovich;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts the whole application with its own configuration, only the datasource is replaced by H2.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:startup;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+public class ApplicationStartupTest {
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void contextLoads_WithSecondLevelCacheRegions() {
+        List<String> regions = List.of(entityManagerFactory.unwrap(SessionFactory.class)
+                .getStatistics().getSecondLevelCacheRegionNames());
+
+        assertTrue(regions.containsAll(List.of("pets", "pets-friends", "owners", "owners-pets")),
+                () -> "Cache regions: " + regions);
+    }
+}
@@ -0,0 +1,126 @@
+package ru.gerilovich;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dao.specifications.PetSpecifications;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.BulkDeleter;
+import ru.gerilovich.services.PetImportService;
+import ru.gerilovich.services.PetService;
+import ru.gerilovich.services.graph.FriendGraphService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deletes more pets than fit in one chunk, each with a friendship to a kept pet and some befriended
+ * by one, and checks nothing but the filtered pets and their friendships is gone. A run that fails
+ * part way keeps the chunks before the failure deleted, and the friend graph reflects them.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulk_delete;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+public class BulkDeleterTest {
+    private static final int DOOMED = 501;
+
+    @Autowired
+    private PetService petService;
+    @Autowired
+    private PetImportService petImportService;
+    @Autowired
+    private PetDao petDao;
+    @Autowired
+    private OwnerDao ownerDao;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private BulkDeleter bulkDeleter;
+    @Autowired
+    private FriendGraphService friendGraphService;
+
+    @Test
+    void deleteWithFilter_ShouldRemoveFilteredPetsAndTheirFriendships() {
+        Owner owner = ownerDao.save(owner("keeper"));
+        Long keptId = save("kept", owner, List.of());
+        List<PetDto> doomed = new ArrayList<>();
+        for (int i = 0; i < DOOMED; i++) {
+            doomed.add(pet("doomed-" + i, "doomed", owner, List.of(keptId)));
+        }
+        petImportService.importPets(doomed.iterator(), 100);
+        List<Long> doomedIds = petDao.findAll(PetSpecifications.hasBreed("doomed")).stream().map(Pet::getId).toList();
+        Long admirerId = save("admirer", owner, List.of(doomedIds.getFirst(), doomedIds.getLast(), keptId));
+
+        assertEquals(DOOMED, petService.deleteWithFilter("doomed", null));
+
+        assertEquals(0, petDao.count(PetSpecifications.hasBreed("doomed")));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pet_friends WHERE pet_id NOT IN "
+                + "(SELECT id FROM pets) OR friend_id NOT IN (SELECT id FROM pets)", Long.class));
+        assertEquals(List.of(keptId), jdbcTemplate.queryForList("SELECT friend_id FROM pet_friends WHERE pet_id = ?",
+                Long.class, admirerId));
+        assertTrue(petDao.existsById(keptId));
+        assertTrue(ownerDao.existsById(owner.getId()));
+        assertEquals(2, ownerDao.getPetsByOwnerId(owner.getId()).size());
+    }
+
+    @Test
+    void deletePets_WhenLaterChunkFails_ShouldStillReloadFriendGraph() {
+        Owner owner = ownerDao.save(owner("failing-keeper"));
+        List<PetDto> failing = new ArrayList<>();
+        for (int i = 0; i < DOOMED; i++) {
+            failing.add(pet("failing-" + i, "failing", owner, List.of()));
+        }
+        petImportService.importPets(failing.iterator(), 100);
+        Long firstId = petDao.findAll(PetSpecifications.hasBreed("failing")).getFirst().getId();
+        assertEquals(firstId, friendGraphService.getNeighbourhood(firstId, 1).getPetId());
+        AtomicInteger calls = new AtomicInteger();
+        Specification<Pet> failsOnSecondChunk = (root, query, cb) -> {
+            // the count, the first chunk, then the second chunk
+            if (calls.incrementAndGet() == 3) {
+                throw new IllegalStateException("second chunk failed");
+            }
+            return PetSpecifications.hasBreed("failing").toPredicate(root, query, cb);
+        };
+
+        assertThrows(IllegalStateException.class, () -> bulkDeleter.deletePets(failsOnSecondChunk));
+
+        assertEquals(1, petDao.count(PetSpecifications.hasBreed("failing")));
+        assertThrows(EntityNotFoundException.class, () -> friendGraphService.getNeighbourhood(firstId, 1));
+    }
+
+    private Long save(String name, Owner owner, List<Long> friendIds) {
+        return petService.save(pet(name, "kept", owner, friendIds)).getId();
+    }
+
+    private static PetDto pet(String name, String breed, Owner owner, List<Long> friendIds) {
+        return new PetDto(name, LocalDate.of(2020, 1, 1), breed, Color.WHITE, owner.getId(), new ArrayList<>(friendIds));
+    }
+
+    private static Owner owner(String name) {
+        Owner owner = new Owner();
+        owner.setName(name);
+        owner.setBirthDate(LocalDate.of(1990, 1, 15));
+        owner.setRole(Role.USER);
+        owner.setPassword("password");
+        owner.setPets(new ArrayList<>());
+        return owner;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dto.BulkChunkResultDto;
+import ru.gerilovich.dto.OwnerDto;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.services.OwnerImportService;
+import ru.gerilovich.services.PetImportService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulk_import;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+public class BulkImportTest {
+    @Autowired
+    private PetImportService petImportService;
+    @Autowired
+    private OwnerImportService ownerImportService;
+    @Autowired
+    private PetDao petDao;
+    @Autowired
+    private OwnerDao ownerDao;
+
+    @Test
+    void importPets_WhenChunkReferencesMissingPets_ShouldRollBackOnlyThatChunk() {
+        long before = petDao.count();
+        List<PetDto> pets = List.of(
+                pet("imported-0", List.of()),
+                pet("imported-1", List.of(Long.MAX_VALUE)),
+                pet("imported-2", List.of()));
+
+        List<BulkChunkResultDto> results = petImportService.importPets(pets.iterator(), 1);
+
+        assertEquals(3, results.size());
+        assertNull(results.get(0).getError());
+        assertEquals(0, results.get(1).getImported());
+        assertEquals("Pets not found with ids: [" + Long.MAX_VALUE + "]", results.get(1).getError());
+        assertNull(results.get(2).getError());
+        assertEquals(before + 2, petDao.count());
+    }
+
+    @Test
+    void importOwners_WhenNameTaken_ShouldReportDuplicate() {
+        List<OwnerDto> first = List.of(owner("registered"));
+        List<OwnerDto> second = List.of(owner("registered"), owner("newcomer"));
+
+        assertNull(ownerImportService.importOwners(first.iterator(), 10).getFirst().getError());
+        BulkChunkResultDto result = ownerImportService.importOwners(second.iterator(), 10).getFirst();
+
+        assertEquals(0, result.getImported());
+        assertEquals("Owners already exist with names [registered]", result.getError());
+        assertTrue(ownerDao.findByName("newcomer").isEmpty());
+    }
+
+    private static PetDto pet(String name, List<Long> friendIds) {
+        return new PetDto(name, LocalDate.of(2020, 1, 1), "breed", Color.WHITE, null, new ArrayList<>(friendIds));
+    }
+
+    private static OwnerDto owner(String name) {
+        return new OwnerDto(name, LocalDate.of(1990, 1, 15), new ArrayList<>(), null, "password");
+    }
+}
@@ -0,0 +1,72 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.auth.AuthenticationCache;
+import ru.gerilovich.services.auth.CachingAuthenticationProvider;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+public class CachingAuthenticationProviderTest {
+    private final CustomUserDetails userDetails = new CustomUserDetails(
+            30L,
+            "masha",
+            "$2a$12$JNR4LEIEn11ZTLF23QUlLu9NlaU4wEsxtzEGc4Wn7XQtD5fjm78Ye",
+            List.of(new SimpleGrantedAuthority("ROLE_USER"))
+    );
+
+    private AuthenticationProvider delegate;
+    private AuthenticationCache authenticationCache;
+    private CachingAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        delegate = Mockito.mock(AuthenticationProvider.class);
+        when(delegate.authenticate(any())).thenReturn(
+                UsernamePasswordAuthenticationToken.authenticated(userDetails, null, userDetails.getAuthorities()));
+        authenticationCache = new AuthenticationCache(Duration.ofMinutes(5), 100);
+        provider = new CachingAuthenticationProvider(delegate, authenticationCache);
+    }
+
+    @Test
+    void authenticate_WhenRepeated_ShouldVerifyOnce() {
+        provider.authenticate(credentials("masha", "secret"));
+        Authentication result = provider.authenticate(credentials("masha", "secret"));
+
+        assertEquals(userDetails, result.getPrincipal());
+        Mockito.verify(delegate, times(1)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_WhenPasswordDiffers_ShouldDelegate() {
+        provider.authenticate(credentials("masha", "secret"));
+        provider.authenticate(credentials("masha", "other"));
+
+        Mockito.verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_WhenOwnerInvalidated_ShouldDelegate() {
+        provider.authenticate(credentials("masha", "secret"));
+        authenticationCache.invalidate(30L);
+        provider.authenticate(credentials("masha", "secret"));
+
+        Mockito.verify(delegate, times(2)).authenticate(any());
+    }
+
+    private Authentication credentials(String username, String password) {
+        return UsernamePasswordAuthenticationToken.unauthenticated(username, password);
+    }
+}
@@ -0,0 +1,269 @@
+package ru.gerilovich;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dto.AccessTokenDto;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.PetImportService;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Boots the whole application on in-memory H2 in PostgreSQL mode, seeds owners, pets and friendships
+ * and drives a mixed workload of reads, writes and token requests from concurrent users. Logs
+ * throughput and p50/p99/p999 latency per endpoint. Excluded from the default build, run with
+ * {@code mvn test -Pload -Dtest=EndToEndLoadTest}; every knob is a {@code load.*} system property,
+ * see the constants below. {@code -Dload.datasource.url/username/password} switch to a disposable
+ * database of your own, {@code -Dload.profile=virtual} to virtual threads.
+ */
+@Slf4j
+@Tag("load")
+public class EndToEndLoadTest {
+    private static final int OWNERS = Integer.getInteger("load.owners", 200);
+    private static final int PETS_PER_OWNER = Integer.getInteger("load.pets-per-owner", 50);
+    private static final int FRIENDS_PER_PET = Integer.getInteger("load.friends-per-pet", 10);
+    private static final int USERS = Integer.getInteger("load.users", 200);
+    private static final int WRITE_PERCENT = Integer.getInteger("load.write-percent", 15);
+    private static final int AUTH_PERCENT = Integer.getInteger("load.auth-percent", 5);
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 10));
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Long.getLong("load.seconds", 30));
+
+    @Test
+    void mixedWorkload() throws Exception {
+        Map<Endpoint, Stats> stats;
+        try (ConfigurableApplicationContext context = LoadTestSupport.start("e2e_load", System.getProperty("load.profile"))) {
+            Dataset dataset = seed(context);
+            stats = load(new Client(LoadTestSupport.port(context), context.getBean(ObjectMapper.class)), dataset);
+        }
+
+        StringBuilder report = new StringBuilder(String.format(
+                "%n%d owners, %d pets, %d users, %d%% writes, %d%% auth, %ds measured%n%-14s %10s %12s %10s %10s %10s %8s",
+                OWNERS, OWNERS * PETS_PER_OWNER, USERS, WRITE_PERCENT, AUTH_PERCENT, MEASUREMENT.toSeconds(),
+                "endpoint", "requests", "requests/s", "p50 ms", "p99 ms", "p999 ms", "errors"));
+        stats.forEach((endpoint, endpointStats) -> report.append(System.lineSeparator()).append(endpointStats.format(endpoint)));
+        log.info(report.toString());
+
+        stats.forEach((endpoint, endpointStats) ->
+                assertEquals(0, endpointStats.errors(), endpoint + " had failed requests"));
+    }
+
+    private Dataset seed(ConfigurableApplicationContext context) {
+        String hash = context.getBean(PasswordEncoder.class).encode(LoadTestSupport.PASSWORD);
+        List<Owner> owners = new ArrayList<>(OWNERS);
+        for (int o = 0; o < OWNERS; o++) {
+            owners.add(LoadTestSupport.owner("load-owner-" + o, Role.USER, hash));
+        }
+        List<Long> ownerIds = context.getBean(OwnerDao.class).saveAll(owners).stream().map(Owner::getId).toList();
+
+        // Half of the pets first, then the other half befriending random pets of the first.
+        PetImportService petImportService = context.getBean(PetImportService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        int half = PETS_PER_OWNER / 2;
+        petImportService.importPets(pets(ownerIds, 0, half, List.of()).iterator(), 1000);
+        List<Long> firstHalf = jdbcTemplate.queryForList("SELECT id FROM pets", Long.class);
+        petImportService.importPets(pets(ownerIds, half, PETS_PER_OWNER, firstHalf).iterator(), 1000);
+
+        Map<Long, List<Long>> petsByOwner = new HashMap<>();
+        jdbcTemplate.query("SELECT id, owner_id FROM pets", row -> {
+            petsByOwner.computeIfAbsent(row.getLong("owner_id"), id -> new ArrayList<>()).add(row.getLong("id"));
+        });
+        return new Dataset(ownerIds, petsByOwner,
+                petsByOwner.values().stream().flatMap(List::stream).toList());
+    }
+
+    private static List<PetDto> pets(List<Long> ownerIds, int from, int to, List<Long> friendPool) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<PetDto> pets = new ArrayList<>(ownerIds.size() * (to - from));
+        for (Long ownerId : ownerIds) {
+            for (int i = from; i < to; i++) {
+                pets.add(LoadTestSupport.pet("pet-" + ownerId + "-" + i, i, ownerId, friends(random, friendPool)));
+            }
+        }
+        return pets;
+    }
+
+    private static List<Long> friends(ThreadLocalRandom random, List<Long> pool) {
+        if (pool.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return random.ints(FRIENDS_PER_PET, 0, pool.size())
+                .distinct()
+                .mapToObj(pool::get)
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    }
+
+    // Closed model: every user sends its next request as soon as the previous one completes. User u logs
+    // in as owner u % OWNERS, reads only that owner, as users may, and only writes its pets, so with
+    // load.users <= load.owners writes never conflict.
+    private Map<Endpoint, Stats> load(Client client, Dataset dataset) throws Exception {
+        long warmupEnds = System.nanoTime() + WARMUP.toNanos();
+        long measurementEnds = warmupEnds + MEASUREMENT.toNanos();
+
+        List<Future<Recorder>> users = new ArrayList<>(USERS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < USERS; u++) {
+                int ownerIndex = u % OWNERS;
+                users.add(executor.submit(() -> {
+                    Long ownerId = dataset.ownerIds().get(ownerIndex);
+                    String basic = LoadTestSupport.basic("load-owner-" + ownerIndex);
+                    String bearer = "Bearer " + client.token(basic);
+                    List<Long> ownPets = dataset.petsByOwner().get(ownerId);
+                    Recorder recorder = new Recorder();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < measurementEnds) {
+                        Endpoint endpoint = Endpoint.next(random);
+                        HttpRequest request = switch (endpoint) {
+                            case PET_BY_ID -> client.get("/api/pets/" + any(random, dataset.petIds()), bearer);
+                            case PET_FILTER -> client.get("/api/pets/filter?size=20&breed=breed-" + random.nextInt(20), bearer);
+                            case PET_FRIENDS -> client.get("/api/pets/" + any(random, dataset.petIds()) + "/friends?hops=2", bearer);
+                            case OWNER_BY_ID -> client.get("/api/owners/" + ownerId, bearer);
+                            case PET_CREATE -> client.write("POST", "/api/pets", bearer,
+                                    LoadTestSupport.pet("created-" + random.nextLong(), random.nextInt(365), ownerId, friends(random, ownPets)));
+                            case PET_UPDATE -> client.write("PUT", "/api/pets/" + any(random, ownPets), bearer,
+                                    new PetDto("renamed-" + random.nextLong(), null, null, null, null, new ArrayList<>()));
+                            case TOKEN -> client.write("POST", "/api/auth/token", basic, null);
+                        };
+                        long start = System.nanoTime();
+                        int status = client.send(request);
+                        if (start >= warmupEnds) {
+                            recorder.record(endpoint, System.nanoTime() - start, status != endpoint.expectedStatus);
+                        }
+                    }
+                    return recorder;
+                }));
+            }
+        }
+
+        Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+        List<Recorder> recorders = users.stream().map(LoadTestSupport::join).toList();
+        for (Endpoint endpoint : Endpoint.values()) {
+            long[] latencies = recorders.stream()
+                    .flatMapToLong(recorder -> Arrays.stream(recorder.latencies[endpoint.ordinal()].toArray()))
+                    .sorted()
+                    .toArray();
+            long errors = recorders.stream().mapToLong(recorder -> recorder.errors[endpoint.ordinal()]).sum();
+            stats.put(endpoint, new Stats(latencies.length, latencies.length / (double) MEASUREMENT.toSeconds(),
+                    LoadTestSupport.percentile(latencies, 0.50), LoadTestSupport.percentile(latencies, 0.99),
+                    LoadTestSupport.percentile(latencies, 0.999), errors));
+        }
+        return stats;
+    }
+
+    private static Long any(ThreadLocalRandom random, List<Long> ids) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private enum Endpoint {
+        PET_BY_ID(200),
+        PET_FILTER(200),
+        PET_FRIENDS(200),
+        OWNER_BY_ID(200),
+        PET_CREATE(201),
+        PET_UPDATE(200),
+        TOKEN(200);
+
+        private static final Endpoint[] READS = {PET_BY_ID, PET_FILTER, PET_FRIENDS, OWNER_BY_ID};
+        private static final Endpoint[] WRITES = {PET_CREATE, PET_UPDATE};
+
+        private final int expectedStatus;
+
+        Endpoint(int expectedStatus) {
+            this.expectedStatus = expectedStatus;
+        }
+
+        static Endpoint next(ThreadLocalRandom random) {
+            int roll = random.nextInt(100);
+            if (roll < AUTH_PERCENT) {
+                return TOKEN;
+            }
+            if (roll < AUTH_PERCENT + WRITE_PERCENT) {
+                return WRITES[random.nextInt(WRITES.length)];
+            }
+            return READS[random.nextInt(READS.length)];
+        }
+    }
+
+    private record Dataset(List<Long> ownerIds, Map<Long, List<Long>> petsByOwner, List<Long> petIds) {
+    }
+
+    private record Client(int port, ObjectMapper objectMapper, HttpClient http) {
+        Client(int port, ObjectMapper objectMapper) {
+            this(port, objectMapper, LoadTestSupport.httpClient());
+        }
+
+        HttpRequest get(String path, String authorization) {
+            return LoadTestSupport.request(port, path, authorization).GET().build();
+        }
+
+        HttpRequest write(String method, String path, String authorization, Object body) throws Exception {
+            HttpRequest.BodyPublisher publisher = body == null
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+            return LoadTestSupport.request(port, path, authorization)
+                    .header("Content-Type", "application/json")
+                    .method(method, publisher)
+                    .build();
+        }
+
+        int send(HttpRequest request) {
+            try {
+                return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (Exception e) {
+                return -1;
+            }
+        }
+
+        String token(String basic) throws Exception {
+            HttpResponse<byte[]> response = http.send(write("POST", "/api/auth/token", basic, null),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            return objectMapper.readValue(response.body(), AccessTokenDto.class).getAccessToken();
+        }
+
+    }
+
+    private static final class Recorder {
+        private final LoadTestSupport.Latencies[] latencies = new LoadTestSupport.Latencies[Endpoint.values().length];
+        private final long[] errors = new long[Endpoint.values().length];
+
+        Recorder() {
+            Arrays.setAll(latencies, e -> new LoadTestSupport.Latencies());
+        }
+
+        void record(Endpoint endpoint, long nanos, boolean failed) {
+            latencies[endpoint.ordinal()].record(nanos);
+            if (failed) {
+                errors[endpoint.ordinal()]++;
+            }
+        }
+    }
+
+    private record Stats(int requests, double throughput, double p50, double p99, double p999, long errors) {
+        String format(Endpoint endpoint) {
+            return String.format("%-14s %10d %12.1f %10.2f %10.2f %10.2f %8d",
+                    endpoint, requests, throughput, p50, p99, p999, errors);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ru.gerilovich;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.EntityBatchResolver;
+import ru.gerilovich.services.PetService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:entity_batch;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class EntityBatchResolverTest {
+    // More than one IN chunk of the resolver.
+    private static final int PETS = 1200;
+
+    @Autowired
+    private EntityBatchResolver entityBatchResolver;
+    @Autowired
+    private PetDao petDao;
+    @Autowired
+    private OwnerDao ownerDao;
+    @Autowired
+    private PetService petService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private List<Long> petIds;
+    private List<Owner> owners;
+
+    @BeforeAll
+    void seed() {
+        List<Owner> newOwners = new ArrayList<>();
+        for (int o = 0; o < 2; o++) {
+            Owner owner = new Owner();
+            owner.setName("resolver-owner-" + o);
+            owner.setBirthDate(LocalDate.of(1990, 1, 15));
+            owner.setRole(Role.USER);
+            owner.setPassword("password");
+            owner.setPets(new ArrayList<>());
+            newOwners.add(owner);
+        }
+        owners = ownerDao.saveAll(newOwners);
+        List<Pet> pets = IntStream.range(0, PETS).mapToObj(i -> {
+            Pet pet = new Pet();
+            pet.setName("pet-" + i);
+            pet.setBirthDate(LocalDate.of(2020, 1, 1));
+            pet.setBreed("breed");
+            pet.setColor(Color.WHITE);
+            return pet;
+        }).toList();
+        petIds = petDao.saveAll(pets).stream().map(Pet::getId).toList();
+    }
+
+    @Test
+    void resolvePets_WhenMoreIdsThanOneChunk_ShouldReturnAllInRequestOrder() {
+        List<Long> ids = new ArrayList<>(petIds.reversed());
+        ids.add(petIds.getFirst());
+
+        List<Long> resolved = transactionTemplate.execute(status -> entityBatchResolver.resolvePets(ids).stream()
+                .map(Pet::getId)
+                .toList());
+
+        assertEquals(petIds.reversed(), resolved);
+    }
+
+    @Test
+    void resolvePets_WhenIdsMissingInSeveralChunks_ShouldReportEveryMissingId() {
+        long unknown = petIds.getLast() + 1000;
+        List<Long> ids = new ArrayList<>(petIds);
+        ids.add(0, unknown);
+        ids.add(unknown + 1);
+
+        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
+                () -> transactionTemplate.execute(status -> entityBatchResolver.resolvePets(ids)));
+
+        assertEquals("Pets not found with ids: [" + unknown + ", " + (unknown + 1) + "]", exception.getMessage());
+    }
+
+    @Test
+    void update_WhenOwnerGiven_ShouldResolveOwnerById() {
+        // The pet id is not an owner id, so resolving the owner by the pet id would fail.
+        Long petId = petIds.getLast();
+        Long ownerId = owners.get(1).getId();
+        PetDto patch = new PetDto(null, null, null, null, ownerId, new ArrayList<>());
+
+        PetDto updated = petService.update(petId, patch, null);
+
+        assertEquals(ownerId, updated.getOwner());
+        assertTrue(ownerDao.getPetsByOwnerId(ownerId).stream().anyMatch(pet -> pet.getId().equals(petId)));
+    }
+}
@@ -0,0 +1,133 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.domain.Specification;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dao.specifications.OwnerSpecifications;
+import ru.gerilovich.dao.specifications.PetSpecifications;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.PetService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every supplied filter criterion narrows the result: a combination returns the intersection of
+ * what each criterion returns on its own.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:filter_specifications;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class FilterSpecificationsTest {
+    private static final LocalDate OLD = LocalDate.of(2015, 3, 1);
+    private static final LocalDate YOUNG = LocalDate.of(2022, 6, 1);
+
+    @Autowired
+    private PetDao petDao;
+    @Autowired
+    private OwnerDao ownerDao;
+    @Autowired
+    private PetService petService;
+
+    private Owner alice;
+    private Owner bob;
+    private Long rexId;
+    private Long buddyId;
+
+    @BeforeAll
+    void seed() {
+        alice = ownerDao.save(owner("alice", OLD));
+        bob = ownerDao.save(owner("bob", YOUNG));
+        rexId = save("rex", OLD, "husky", Color.WHITE, alice, List.of());
+        buddyId = save("buddy", YOUNG, "husky", Color.BLACK, bob, List.of(rexId));
+        save("rex", YOUNG, "pug", Color.WHITE, bob, List.of(rexId, buddyId));
+        save("max", OLD, "husky", Color.WHITE, bob, List.of(buddyId));
+        save("max", OLD, "pug", Color.BROWN, alice, List.of());
+    }
+
+    @Test
+    void petFilter_WithBreedAndColor_ShouldReturnIntersection() {
+        assertIntersection(PetSpecifications.hasBreed("husky"), PetSpecifications.hasColor(Color.WHITE),
+                PetSpecifications.filter(null, null, "husky", Color.WHITE, null, null), 2);
+    }
+
+    @Test
+    void petFilter_WithNameAndBirthDate_ShouldReturnIntersection() {
+        assertIntersection(PetSpecifications.hasName("rex"), PetSpecifications.hasBirthDate(YOUNG),
+                PetSpecifications.filter("rex", YOUNG, null, null, null, null), 1);
+    }
+
+    @Test
+    void petFilter_WithOwnerAndFriends_ShouldReturnIntersection() {
+        assertIntersection(PetSpecifications.hasOwnerId(bob.getId()), PetSpecifications.hasFriendIn(List.of(rexId)),
+                PetSpecifications.filter(null, null, null, null, bob.getId(), List.of(rexId)), 2);
+    }
+
+    @Test
+    void petFilter_WithEveryCriterion_ShouldMatchOnlyThePetFulfillingAll() {
+        List<Pet> pets = petDao.findAll(PetSpecifications.filter("max", OLD, "husky", Color.WHITE, bob.getId(),
+                List.of(buddyId)));
+
+        assertEquals(1, pets.size());
+        assertEquals("max", pets.getFirst().getName());
+        assertEquals(bob.getId(), pets.getFirst().getOwner().getId());
+    }
+
+    @Test
+    void petFilter_WhenCriteriaExcludeEachOther_ShouldReturnNothing() {
+        assertEquals(0, petDao.count(PetSpecifications.filter(null, null, "pug", Color.BLACK, null, null)));
+    }
+
+    @Test
+    void ownerFilter_WithNameAndPets_ShouldReturnIntersection() {
+        List<Owner> owners = ownerDao.findAll(OwnerSpecifications.filter("bob", null, List.of(buddyId, rexId)));
+
+        assertEquals(List.of(bob.getId()), owners.stream().map(Owner::getId).toList());
+        assertEquals(0, ownerDao.count(OwnerSpecifications.filter("alice", YOUNG, null)));
+    }
+
+    private void assertIntersection(Specification<Pet> first, Specification<Pet> second, Specification<Pet> combined,
+                                    int expectedSize) {
+        Set<Long> expected = ids(first);
+        expected.retainAll(ids(second));
+
+        assertEquals(expected, ids(combined));
+        assertEquals(expectedSize, expected.size());
+    }
+
+    private Set<Long> ids(Specification<Pet> specification) {
+        return petDao.findAll(specification).stream().map(Pet::getId).collect(Collectors.toSet());
+    }
+
+    private Long save(String name, LocalDate birthDate, String breed, Color color, Owner owner, List<Long> friendIds) {
+        return petService.save(new PetDto(name, birthDate, breed, color, owner.getId(), new ArrayList<>(friendIds))).getId();
+    }
+
+    private static Owner owner(String name, LocalDate birthDate) {
+        Owner owner = new Owner();
+        owner.setName(name);
+        owner.setBirthDate(birthDate);
+        owner.setRole(Role.USER);
+        owner.setPassword("password");
+        owner.setPets(new ArrayList<>());
+        return owner;
+    }
+}
@@ -0,0 +1,188 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.Test;
+import ru.gerilovich.services.graph.FriendGraph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class FriendGraphTest {
+    // 1 - 2 - 3 - 4   5 - 6, with 1 - 2 stored in both directions.
+    private final FriendGraph graph = FriendGraph.builder()
+            .addPet(1).addPet(2).addPet(3).addPet(4).addPet(5).addPet(6).addPet(7)
+            .addFriendship(1, 2).addFriendship(2, 1)
+            .addFriendship(3, 2)
+            .addFriendship(3, 4)
+            .addFriendship(5, 6)
+            .addFriendship(6, 99)
+            .build();
+
+    @Test
+    void build_ShouldDeduplicateFriendshipsAndDropUnknownPets() {
+        assertEquals(7, graph.petCount());
+        assertEquals(4, graph.friendshipCount());
+        assertFalse(graph.contains(99));
+    }
+
+    @Test
+    void neighbourhood_ShouldGroupPetsByDistance() {
+        long[][] layers = graph.neighbourhood(1, 5);
+
+        assertEquals(3, layers.length);
+        assertArrayEquals(new long[]{2}, layers[0]);
+        assertArrayEquals(new long[]{3}, layers[1]);
+        assertArrayEquals(new long[]{4}, layers[2]);
+    }
+
+    @Test
+    void shortestPath_ShouldFollowFriendshipsInEitherDirection() {
+        assertArrayEquals(new long[]{4, 3, 2, 1}, graph.shortestPath(4, 1));
+        assertArrayEquals(new long[]{5}, graph.shortestPath(5, 5));
+    }
+
+    @Test
+    void shortestPath_WhenNotConnected_ShouldBeEmpty() {
+        assertEquals(0, graph.shortestPath(1, 6).length);
+        assertEquals(0, graph.shortestPath(1, 7).length);
+    }
+
+    @Test
+    void without_ShouldKeepOtherPetsAndLetChangedOnesBeReAdded() {
+        FriendGraph updated = graph.without(new long[]{3})
+                .addPet(3)
+                .addFriendship(3, 5)
+                .build();
+
+        assertEquals(1, updated.neighbourhood(1, 5).length);
+        assertEquals(0, updated.neighbourhood(4, 5).length);
+        assertArrayEquals(new long[]{3, 5, 6}, updated.shortestPath(3, 6));
+    }
+
+    @Test
+    void without_WhenPetIsGone_ShouldDropItFromItsFriends() {
+        FriendGraph updated = graph.without(new long[]{2}).build();
+
+        assertFalse(updated.contains(2));
+        assertEquals(6, updated.petCount());
+        assertEquals(2, updated.friendshipCount());
+        assertEquals(0, updated.neighbourhood(1, 5).length);
+        assertArrayEquals(new long[]{3, 4}, updated.shortestPath(3, 4));
+    }
+
+    @Test
+    void without_WhenNewPetSortsBeforeOthers_ShouldRebuild() {
+        FriendGraph updated = graph.without(new long[]{0}).addPet(0).addFriendship(0, 7).build();
+
+        assertEquals(8, updated.petCount());
+        assertArrayEquals(new long[]{0, 7}, updated.shortestPath(0, 7));
+        assertArrayEquals(new long[]{1, 2, 3}, updated.shortestPath(1, 3));
+    }
+
+    @Test
+    void without_WhenManyPetsAreGone_ShouldKeepTheRest() {
+        FriendGraph updated = graph.without(new long[]{1, 2, 3}).build();
+
+        assertEquals(4, updated.petCount());
+        assertEquals(1, updated.friendshipCount());
+        assertFalse(updated.contains(1));
+        assertArrayEquals(new long[]{5, 6}, updated.shortestPath(5, 6));
+    }
+
+    @Test
+    void without_ShouldMatchAGraphBuiltFromScratch() {
+        Random random = new Random(42);
+        Map<Long, Set<Long>> friends = new TreeMap<>();
+        for (long id = 1; id <= 3000; id += 1 + random.nextInt(2)) {
+            friends.put(id, new HashSet<>());
+        }
+        List<Long> ids = new ArrayList<>(friends.keySet());
+        for (int i = 0; i < 6000; i++) {
+            befriend(friends, ids.get(random.nextInt(ids.size())), ids.get(random.nextInt(ids.size())));
+        }
+        FriendGraph incremental = build(friends);
+
+        for (int round = 0; round < 50; round++) {
+            long[] changed = new long[4];
+            for (int i = 0; i < 3; i++) {
+                changed[i] = ids.get(random.nextInt(ids.size()));
+            }
+            for (long petId : changed) {
+                friends.values().forEach(set -> set.remove(petId));
+                friends.remove(petId);
+            }
+            if (round % 3 == 0) {
+                friends.put(changed[0], new HashSet<>());
+            }
+            changed[3] = changed[0];
+            if (round % 5 == 0) {
+                changed[3] = ids.getLast() + 1;
+                ids.add(changed[3]);
+                friends.put(changed[3], new HashSet<>());
+            }
+            FriendGraph.Changes changes = incremental.without(changed);
+            for (long petId : changed) {
+                if (friends.containsKey(petId)) {
+                    changes.addPet(petId);
+                    for (int i = 0; i < 4; i++) {
+                        long friendId = ids.get(random.nextInt(ids.size()));
+                        if (friends.containsKey(friendId) && friendId != petId) {
+                            befriend(friends, petId, friendId);
+                            changes.addFriendship(petId, friendId);
+                        }
+                    }
+                }
+            }
+            incremental = changes.build();
+        }
+
+        FriendGraph rebuilt = build(friends);
+        assertEquals(rebuilt.petCount(), incremental.petCount());
+        assertEquals(rebuilt.friendshipCount(), incremental.friendshipCount());
+        for (long petId : ids) {
+            assertEquals(rebuilt.contains(petId), incremental.contains(petId));
+            assertArrayEquals(rebuilt.neighbourhood(petId, 2), incremental.neighbourhood(petId, 2));
+        }
+    }
+
+    private static void befriend(Map<Long, Set<Long>> friends, long petId, long friendId) {
+        if (petId != friendId) {
+            friends.get(petId).add(friendId);
+            friends.get(friendId).add(petId);
+        }
+    }
+
+    private static FriendGraph build(Map<Long, Set<Long>> friends) {
+        FriendGraph.Builder builder = FriendGraph.builder();
+        friends.forEach((petId, petFriends) -> {
+            builder.addPet(petId);
+            petFriends.forEach(friendId -> builder.addFriendship(petId, friendId));
+        });
+        return builder.build();
+    }
+
+    @Test
+    void mutualFriends_ShouldCountSharedFriendsOfNonFriends() {
+        FriendGraph square = FriendGraph.builder()
+                .addPet(1).addPet(2).addPet(3).addPet(4).addPet(5)
+                .addFriendship(1, 2).addFriendship(1, 3)
+                .addFriendship(4, 2).addFriendship(4, 3)
+                .addFriendship(5, 3).addFriendship(2, 3)
+                .build();
+
+        FriendGraph.MutualFriends mutual = square.mutualFriends(1);
+
+        assertEquals(2, mutual.petIds().length);
+        for (int i = 0; i < mutual.petIds().length; i++) {
+            assertEquals(mutual.petIds()[i] == 4 ? 2 : 1, mutual.counts()[i]);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.gerilovich.dto.PetRecommendationDto;
+import ru.gerilovich.services.graph.FriendGraphService;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pet 1 is friends with 2 and 50. Pet 2 is friends with 3..40, pet 50 with 3 and 4, so 3 and 4 share
+ * two friends with pet 1 and every other candidate one. Pets 7 and 39 share pet 1's breed.
+ */
+public class FriendRecommendationTest {
+    private static final DataSource DATABASE = new DriverManagerDataSource("jdbc:h2:mem:recommendations;DB_CLOSE_DELAY=-1");
+
+    private static FriendGraphService friendGraphService;
+
+    @BeforeAll
+    static void createGraph() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(DATABASE);
+        jdbcTemplate.execute("CREATE TABLE pets (id BIGINT PRIMARY KEY, breed VARCHAR(50), color VARCHAR(50))");
+        jdbcTemplate.execute("CREATE TABLE pet_friends (pet_id BIGINT, friend_id BIGINT)");
+        for (long id = 1; id <= 50; id++) {
+            jdbcTemplate.update("INSERT INTO pets VALUES (?, ?, 'WHITE')", id, id == 1 || id == 7 || id == 39 ? "husky" : "pug");
+        }
+        jdbcTemplate.update("INSERT INTO pet_friends VALUES (1, 2), (1, 50), (50, 3), (50, 4)");
+        for (long id = 3; id <= 40; id++) {
+            jdbcTemplate.update("INSERT INTO pet_friends VALUES (2, ?)", id);
+        }
+        friendGraphService = new FriendGraphService(new NamedParameterJdbcTemplate(DATABASE));
+        friendGraphService.afterSingletonsInstantiated();
+    }
+
+    @Test
+    void getRecommendations_WithoutBoost_ShouldBreakTiesByPetId() {
+        assertEquals(List.of(3L, 4L), petIds(friendGraphService.getRecommendations(1, 2, 0, 0)));
+        assertEquals(List.of(3L, 4L, 5L), petIds(friendGraphService.getRecommendations(1, 3, 0, 0)));
+    }
+
+    @Test
+    void getRecommendations_WhenBoostLiftsATiedCandidate_ShouldRankItFirst() {
+        List<PetRecommendationDto> recommendations = friendGraphService.getRecommendations(1, 2, 1.5, 0);
+
+        assertEquals(List.of(7L, 3L), petIds(recommendations));
+        assertEquals(1, recommendations.getFirst().getMutualFriends());
+        assertEquals(2.5, recommendations.getFirst().getScore());
+    }
+
+    @Test
+    void getRecommendations_WhenTiesExceedTheShortlist_ShouldOnlyBoostCandidatesWithinIt() {
+        // 36 candidates tie on one mutual friend, only the lowest ids up to five times the limit are
+        // considered for the boost: 7 is, 39 would have outscored 3 but is past the cap.
+        List<PetRecommendationDto> recommendations = friendGraphService.getRecommendations(1, 2, 1.5, 0);
+
+        assertEquals(List.of(7L, 3L), petIds(recommendations));
+        assertEquals(List.of(7L, 39L, 3L), petIds(friendGraphService.getRecommendations(1, 8, 1.5, 0)).subList(0, 3));
+    }
+
+    private static List<Long> petIds(List<PetRecommendationDto> recommendations) {
+        return recommendations.stream().map(PetRecommendationDto::getPetId).toList();
+    }
+}
@@ -0,0 +1,39 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.Test;
+import ru.gerilovich.services.exceptions.InvalidRequestParameterException;
+import ru.gerilovich.services.pagination.KeysetCursor;
+import ru.gerilovich.services.pagination.KeysetSort;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class KeysetCursorTest {
+
+    @Test
+    void decode_WhenEncoded_ShouldRestorePosition() {
+        KeysetCursor cursor = new KeysetCursor(KeysetSort.NAME, 42L, "tralalelo: tralala");
+
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode(), KeysetSort.NAME));
+    }
+
+    @Test
+    void decode_WhenValueIsNull_ShouldRestoreNull() {
+        KeysetCursor cursor = new KeysetCursor(KeysetSort.NAME, 42L, null);
+
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode(), KeysetSort.NAME));
+        assertEquals("", KeysetCursor.decode(new KeysetCursor(KeysetSort.NAME, 42L, "").encode(), KeysetSort.NAME).value());
+    }
+
+    @Test
+    void decode_WhenSortDiffers_ShouldReject() {
+        String token = new KeysetCursor(KeysetSort.NAME, 42L, "tralalelo").encode();
+
+        assertThrows(InvalidRequestParameterException.class, () -> KeysetCursor.decode(token, KeysetSort.ID));
+    }
+
+    @Test
+    void decode_WhenMalformed_ShouldReject() {
+        assertThrows(InvalidRequestParameterException.class, () -> KeysetCursor.decode("not a cursor", KeysetSort.ID));
+    }
+}
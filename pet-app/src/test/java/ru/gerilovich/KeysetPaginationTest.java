@@ -0,0 +1,73 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.gerilovich.dto.CursorPageDto;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.services.PetService;
+import ru.gerilovich.services.pagination.KeysetSort;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Walks cursor pages sorted by name across runs of equal names and pets without a name, which sort
+ * last, and checks every pet is returned exactly once and in order.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:keyset_pagination;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+public class KeysetPaginationTest {
+    @Autowired
+    private PetService petService;
+
+    @Test
+    void getPetsAfter_SortedByName_ShouldReturnEveryPetOnceAcrossEqualAndNullNames() {
+        List<PetDto> saved = new ArrayList<>();
+        for (String name : Arrays.asList("rex", null, "ace", "rex", null, "rex", "zed", null, "ace", "rex")) {
+            saved.add(petService.save(new PetDto(name, LocalDate.of(2020, 1, 1), "keyset", Color.WHITE, null,
+                    new ArrayList<>())));
+        }
+        List<Long> expected = saved.stream()
+                .sorted(Comparator.comparing(PetDto::getName, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(PetDto::getId))
+                .map(PetDto::getId)
+                .toList();
+
+        List<Long> walked = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            CursorPageDto<PetDto> page = petService.getPetsAfter(after, 3, KeysetSort.NAME, null, null, "keyset",
+                    null, null, null);
+            page.getContent().forEach(pet -> walked.add(pet.getId()));
+            after = page.getNextCursor();
+            pages++;
+        } while (after != null);
+
+        assertEquals(expected, walked);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    void getPetsAfter_WhenLastPageIsFull_ShouldNotIssueCursor() {
+        petService.save(new PetDto(null, LocalDate.of(2020, 1, 1), "lonely", Color.BLACK, null, new ArrayList<>()));
+
+        CursorPageDto<PetDto> page = petService.getPetsAfter(null, 1, KeysetSort.NAME, null, null, "lonely",
+                null, null, null);
+
+        assertEquals(1, page.getContent().size());
+        assertNull(page.getNextCursor());
+    }
+}
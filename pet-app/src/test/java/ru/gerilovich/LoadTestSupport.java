@@ -0,0 +1,128 @@
+package ru.gerilovich;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Role;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shared by the load tests: boots the application on a random port, against the database given with
+ * {@code -Dload.datasource.url/username/password} or else in-memory H2, seeds owners and pets and
+ * records latencies.
+ */
+final class LoadTestSupport {
+    static final String PASSWORD = "load-password";
+
+    private static final Color[] COLORS = Color.values();
+
+    private LoadTestSupport() {
+    }
+
+    // Passed as command line arguments: default properties would lose to application.yaml.
+    static ConfigurableApplicationContext start(String h2Database, String profile, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + System.getProperty("load.datasource.url",
+                        "jdbc:h2:mem:" + h2Database + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1"),
+                "--spring.datasource.username=" + System.getProperty("load.datasource.username", "sa"),
+                "--spring.datasource.password=" + System.getProperty("load.datasource.password", ""),
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        SpringApplicationBuilder application = new SpringApplicationBuilder(Main.class);
+        if (profile != null) {
+            application.profiles(profile);
+        }
+        return application.run(args.toArray(String[]::new));
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    static Owner owner(String name, Role role, String passwordHash) {
+        Owner owner = new Owner();
+        owner.setName(name);
+        owner.setBirthDate(LocalDate.of(1990, 1, 15));
+        owner.setRole(role);
+        owner.setPassword(passwordHash);
+        owner.setPets(new ArrayList<>());
+        return owner;
+    }
+
+    // Spreads birth dates, breeds and colors over i, so the filters have something to select.
+    static PetDto pet(String name, int i, Long ownerId, List<Long> friendIds) {
+        return new PetDto(name, LocalDate.of(2020, 1, 1).plusDays(i % 365), "breed-" + i % 20,
+                COLORS[i % COLORS.length], ownerId, friendIds);
+    }
+
+    static String basic(String username) {
+        return "Basic " + Base64.getEncoder()
+                .encodeToString((username + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static HttpClient httpClient() {
+        return HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    static HttpRequest.Builder request(int port, String path, String authorization) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", authorization)
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The latency at the given quantile of ascending nanoseconds, in milliseconds. */
+    static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    /** Latencies of one user, so recording needs no synchronization. */
+    static final class Latencies {
+        private long[] nanos = new long[256];
+        private int count;
+
+        void record(long latency) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latency;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(nanos, count);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.services.sql.SqlStatementCounter;
+import ru.gerilovich.services.sql.StatementCount;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs every DAO lookup against the migrated schema, captures the SQL Hibernate prepares for it and
+ * fails when EXPLAIN shows a full table scan. Parameters stay unbound, H2 plans EXPLAIN without them.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migration_index;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:migrations/V1__Create_tables.sql,"
+                + "classpath:migrations/V3__Create_indexes.sql,classpath:migrations/V5__Add_version_columns.sql"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class MigrationIndexTest {
+    private static final Pageable PAGE = PageRequest.of(0, 20);
+    private static final LocalDate DATE = LocalDate.of(2006, 4, 8);
+
+    @Autowired
+    private PetDao petDao;
+    @Autowired
+    private OwnerDao ownerDao;
+    @Autowired
+    private SqlStatementCounter statementCounter;
+    @Autowired
+    private DataSource dataSource;
+
+    Stream<Arguments> daoQueries() {
+        return Stream.of(
+                Arguments.of("PetDao.findByName", (Runnable) () -> petDao.findByName("tralalelo", PAGE)),
+                Arguments.of("PetDao.findByNameAndBirthDate", (Runnable) () -> petDao.findByNameAndBirthDate("tralalelo", DATE, PAGE)),
+                Arguments.of("PetDao.findByBirthDate", (Runnable) () -> petDao.findByBirthDate(DATE, PAGE)),
+                Arguments.of("PetDao.findByBreed", (Runnable) () -> petDao.findByBreed("Shark", PAGE)),
+                Arguments.of("PetDao.findByColor", (Runnable) () -> petDao.findByColor(Color.WHITE, PAGE)),
+                Arguments.of("PetDao.findByOwnerId", (Runnable) () -> petDao.findByOwnerId(30L, PAGE)),
+                Arguments.of("PetDao.findByFriendsIdIn", (Runnable) () -> petDao.findByFriendsIdIn(List.of(52L, 239L), PAGE)),
+                Arguments.of("PetDao.findReferrersOf", (Runnable) () -> petDao.findReferrersOf(List.of(52L))),
+                Arguments.of("PetDao.findReferrerIdsOf", (Runnable) () -> petDao.findReferrerIdsOf(List.of(52L))),
+                Arguments.of("PetDao.findFriendIdsOf", (Runnable) () -> petDao.findFriendIdsOf(List.of(52L, 239L))),
+                Arguments.of("OwnerDao.findByName", (Runnable) () -> ownerDao.findByName("boss")),
+                Arguments.of("OwnerDao.existsByName", (Runnable) () -> ownerDao.existsByName("boss")),
+                Arguments.of("OwnerDao.findByBirthDate", (Runnable) () -> ownerDao.findByBirthDate(DATE, PAGE)),
+                Arguments.of("OwnerDao.findByPetsIdIn", (Runnable) () -> ownerDao.findByPetsIdIn(List.of(52L, 239L), PAGE)),
+                Arguments.of("OwnerDao.getPetsByOwnerId", (Runnable) () -> ownerDao.getPetsByOwnerId(30L)),
+                Arguments.of("OwnerDao.findPetIdsOf", (Runnable) () -> ownerDao.findPetIdsOf(List.of(30L, 31L)))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("daoQueries")
+    void daoQuery_ShouldNotScanTable(String query, Runnable lookup) throws SQLException {
+        Set<String> statements;
+        try (StatementCount count = statementCounter.open()) {
+            lookup.run();
+            statements = Set.copyOf(count.statements());
+        }
+
+        assertFalse(statements.isEmpty(), query + " ran no SQL");
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains("tableScan"), query + " scans a table:\n" + plan);
+        }
+    }
+
+    private String explain(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            StringBuilder plan = new StringBuilder();
+            while (resultSet.next()) {
+                plan.append(resultSet.getString(1)).append('\n');
+            }
+            return plan.toString();
+        }
+    }
+}
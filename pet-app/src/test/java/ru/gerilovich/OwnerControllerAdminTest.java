@@ -16,9 +16,11 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.gerilovich.config.SecurityConfig;
 import ru.gerilovich.controllers.OwnerController;
+import ru.gerilovich.dto.BulkChunkResultDto;
 import ru.gerilovich.dto.OwnerDto;
 import ru.gerilovich.models.Role;
 import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.OwnerImportService;
 import ru.gerilovich.services.OwnerService;
 import ru.gerilovich.services.auth.OwnerDetailsService;
 
@@ -44,6 +46,9 @@ public class OwnerControllerAdminTest {
     @MockitoBean
     private OwnerService ownerService;
 
+    @MockitoBean
+    private OwnerImportService ownerImportService;
+
     @MockitoBean
     private OwnerDetailsService ownerDetailsService;
 
@@ -189,6 +194,24 @@ public class OwnerControllerAdminTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void importOwners_WhenAdmin_ShouldReturnChunkResults() throws Exception {
+        String requestBody = """
+                [{"name": "vet clinic", "birthDate": "1990-01-15", "password": "qwerty"},
+                 {"name": "cat shelter", "birthDate": "1985-06-01", "password": "12345"}]
+                """;
+        when(ownerImportService.importOwners(any(), eq(1000))).thenReturn(List.of(
+                new BulkChunkResultDto(0, 2, 0, "Owners already exist with names [vet clinic]")));
+
+        mockMvc.perform(post("/api/owners/bulk")
+                        .with(user(userDetails))
+                        .content(requestBody)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].received").value(2))
+                .andExpect(jsonPath("$[0].imported").value(0));
+    }
+
     private List<OwnerDto> getOwners() {
         OwnerDto one = new OwnerDto(
                 "masha",
@@ -20,6 +20,7 @@ import ru.gerilovich.controllers.OwnerController;
 import ru.gerilovich.dto.OwnerDto;
 import ru.gerilovich.models.Role;
 import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.OwnerImportService;
 import ru.gerilovich.services.OwnerService;
 import ru.gerilovich.services.auth.OwnerDetailsService;
 
@@ -43,6 +44,9 @@ public class OwnerControllerUserTest {
     @MockitoBean
     private OwnerService ownerService;
 
+    @MockitoBean
+    private OwnerImportService ownerImportService;
+
     @MockitoBean
     private OwnerDetailsService ownerDetailsService;
 
@@ -103,6 +107,28 @@ public class OwnerControllerUserTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    void patch_WhenNotAdmin_ShouldReturnForbiddenForAnotherOwner() throws Exception {
+        mockMvc.perform(patch("/api/owners/{id}", 1L)
+                        .content("{\"name\": \"mashina\"}")
+                        .contentType("application/merge-patch+json")
+                        .with(user(userDetails)))
+                .andExpect(status().isForbidden());
+        Mockito.verify(ownerService, times(0)).patch(anyLong(), any());
+    }
+
+    @Test
+    void patch_WhenNotAdmin_ShouldPatchOwnAccount() throws Exception {
+        Mockito.when(ownerService.patch(eq(30L), any())).thenReturn("\"2\"");
+        mockMvc.perform(patch("/api/owners/{id}", 30L)
+                        .content("{\"birthDate\": null}")
+                        .contentType("application/merge-patch+json")
+                        .with(user(userDetails)))
+                .andExpect(status().isNoContent());
+        Mockito.verify(ownerService).patch(eq(30L), argThat(patch ->
+                patch.getBirthDate().isEmpty() && patch.getName() == null));
+    }
+
     @Test
     void create_WhenNotAdmin_ShouldCreateOwner() throws Exception {
         OwnerDto ownerDto = getOwners().getFirst();
@@ -195,6 +221,16 @@ public class OwnerControllerUserTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    void importOwners_WhenNotAdmin_ShouldReturnForbidden() throws Exception {
+        mockMvc.perform(post("/api/owners/bulk")
+                        .with(user(userDetails))
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isForbidden());
+        Mockito.verify(ownerImportService, times(0)).importOwners(any(), anyInt());
+    }
+
     private List<OwnerDto> getOwners() {
         OwnerDto one = new OwnerDto(
                 "masha",
@@ -0,0 +1,144 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dto.OwnerPatchDto;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.dto.PetPatchDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.EntityTags;
+import ru.gerilovich.services.OwnerService;
+import ru.gerilovich.services.PetService;
+import ru.gerilovich.services.sql.SqlStatementCounter;
+import ru.gerilovich.services.sql.StatementCount;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A patch writes only the columns it changes, leaves the collections it doesn't replace unloaded and
+ * answers with the ETag of the version that committed.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:patch;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+public class PatchTest {
+    @Autowired
+    private PetService petService;
+    @Autowired
+    private OwnerService ownerService;
+    @Autowired
+    private PetDao petDao;
+    @Autowired
+    private OwnerDao ownerDao;
+    @Autowired
+    private SqlStatementCounter statementCounter;
+
+    @Test
+    void patchPet_WithName_ShouldUpdateOnlyNameWithoutLoadingFriends() {
+        Long ownerId = ownerDao.save(owner("pet-patcher")).getId();
+        Long friendId = savePet("friend", ownerId, List.of());
+        Long petId = savePet("rex", ownerId, List.of(friendId));
+        PetPatchDto patch = new PetPatchDto();
+        patch.setName(Optional.of("rex junior"));
+
+        Set<String> statements;
+        String tag;
+        try (StatementCount count = statementCounter.open()) {
+            tag = petService.patch(petId, patch, ownerId);
+            statements = Set.copyOf(count.statements());
+        }
+
+        String update = single(statements, "update pets");
+        assertTrue(update.contains("name=?"), update);
+        assertFalse(update.contains("breed") || update.contains("color") || update.contains("owner_id"), update);
+        assertTrue(statements.stream().noneMatch(sql -> sql.contains("pet_friends")), statements::toString);
+        assertEquals(EntityTags.of(petDao.findVersionById(petId).orElseThrow()), tag);
+    }
+
+    @Test
+    void patchOwner_WithBirthDate_ShouldUpdateOnlyBirthDateWithoutLoadingPets() {
+        Long ownerId = ownerDao.save(owner("owner-patcher")).getId();
+        savePet("owned", ownerId, List.of());
+        OwnerPatchDto patch = new OwnerPatchDto();
+        patch.setBirthDate(Optional.of(LocalDate.of(1985, 5, 5)));
+
+        Set<String> statements;
+        String tag;
+        try (StatementCount count = statementCounter.open()) {
+            tag = ownerService.patch(ownerId, patch);
+            statements = Set.copyOf(count.statements());
+        }
+
+        String update = single(statements, "update owners");
+        assertTrue(update.contains("birthdate=?"), update);
+        assertFalse(update.contains("name=?") || update.contains("password"), update);
+        assertTrue(statements.stream().noneMatch(sql -> sql.contains("pets")), statements::toString);
+        assertEquals(EntityTags.of(ownerDao.findVersionById(ownerId).orElseThrow()), tag);
+    }
+
+    @Test
+    void patchOwner_WithPetIds_ShouldReturnTheCommittedVersion() {
+        Long ownerId = ownerDao.save(owner("adopter")).getId();
+        Long previousOwnerId = ownerDao.save(owner("giver")).getId();
+        Long ownedId = savePet("owned", ownerId, List.of());
+        Long adoptedId = savePet("adopted", previousOwnerId, List.of());
+        OwnerPatchDto patch = new OwnerPatchDto();
+        patch.setPetIds(Optional.of(List.of(ownedId, adoptedId)));
+
+        String tag = ownerService.patch(ownerId, patch);
+
+        assertEquals(EntityTags.of(ownerDao.findVersionById(ownerId).orElseThrow()), tag);
+        assertEquals(ownerId, petService.getById(adoptedId).getOwner());
+    }
+
+    @Test
+    void patchPet_WithOwner_ShouldReturnTheCommittedVersion() {
+        Long ownerId = ownerDao.save(owner("first-owner")).getId();
+        Long nextOwnerId = ownerDao.save(owner("next-owner")).getId();
+        Long petId = savePet("moving", ownerId, List.of());
+        PetPatchDto patch = new PetPatchDto();
+        patch.setOwner(Optional.of(nextOwnerId));
+
+        String tag = petService.patch(petId, patch, null);
+
+        assertEquals(EntityTags.of(petDao.findVersionById(petId).orElseThrow()), tag);
+        assertEquals(nextOwnerId, petService.getById(petId).getOwner());
+    }
+
+    private static String single(Set<String> statements, String prefix) {
+        List<String> matching = statements.stream().filter(sql -> sql.toLowerCase().startsWith(prefix)).toList();
+        assertEquals(1, matching.size(), statements::toString);
+        return matching.getFirst().toLowerCase();
+    }
+
+    private Long savePet(String name, Long ownerId, List<Long> friendIds) {
+        return petService.save(new PetDto(name, LocalDate.of(2020, 1, 1), "husky", Color.WHITE, ownerId,
+                new ArrayList<>(friendIds))).getId();
+    }
+
+    private static Owner owner(String name) {
+        Owner owner = new Owner();
+        owner.setName(name);
+        owner.setBirthDate(LocalDate.of(1990, 1, 15));
+        owner.setRole(Role.USER);
+        owner.setPassword("password");
+        owner.setPets(new ArrayList<>());
+        return owner;
+    }
+}
@@ -16,14 +16,19 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.gerilovich.config.SecurityConfig;
 import ru.gerilovich.controllers.PetController;
+import ru.gerilovich.dto.BulkChunkResultDto;
 import ru.gerilovich.dto.PetDto;
 import ru.gerilovich.models.Color;
 import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.PetImportService;
 import ru.gerilovich.services.PetService;
 import ru.gerilovich.services.auth.OwnerDetailsService;
+import ru.gerilovich.services.graph.FriendGraphService;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.mockito.ArgumentMatchers.*;
@@ -31,6 +36,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -43,6 +49,12 @@ public class PetControllerAdminTest {
     @MockitoBean
     private PetService petService;
 
+    @MockitoBean
+    private PetImportService petImportService;
+
+    @MockitoBean
+    private FriendGraphService friendGraphService;
+
     @MockitoBean
     private OwnerDetailsService ownerDetailsService;
 
@@ -56,8 +68,6 @@ public class PetControllerAdminTest {
 
     @BeforeEach
     void setUp() {
-        when(petService.getIsPetOwner(anyLong(), anyLong()))
-                .thenReturn(false);
         when(ownerDetailsService.loadUserByUsername(anyString()))
                 .thenReturn(userDetails);
     }
@@ -80,6 +90,19 @@ public class PetControllerAdminTest {
                 .andExpect(jsonPath("$.id").value(1));
     }
 
+    @Test
+    void getPetById_WithFields_ShouldReturnOnlyRequestedFields() throws Exception {
+        when(petService.getById(1L, List.of("id", "name"))).thenReturn(Map.of("id", 1L, "name", "tralalelo tralala"));
+
+        mockMvc.perform(get("/api/pets/1")
+                        .param("fields", "id,name")
+                        .with(user(userDetails)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("tralalelo tralala"))
+                .andExpect(jsonPath("$.breed").doesNotExist());
+        Mockito.verify(petService, times(0)).getById(1L);
+    }
+
     @Test
     void update_WhenAdmin_ShouldUpdatePet() throws Exception {
         PetDto updatedPetDto = new PetDto();
@@ -102,7 +125,7 @@ public class PetControllerAdminTest {
                 }
                 """;
 
-        when(petService.update(any(), any())).thenReturn(updatedPetDto);
+        when(petService.update(any(), any(), isNull())).thenReturn(updatedPetDto);
         mockMvc.perform(put("/api/pets/1", updatedPetDto)
                         .with(user(userDetails))
                         .content(requestBody)
@@ -138,6 +161,28 @@ public class PetControllerAdminTest {
                 .andExpect(status().isCreated());
     }
 
+    @Test
+    void patch_WhenAdmin_ShouldApplyMergePatchAndReturnETag() throws Exception {
+        String requestBody = """
+                {
+                "name": "tralalelo tralalelovich",
+                "breed": null
+                }
+                """;
+        when(petService.patch(eq(1L), any(), isNull())).thenReturn("\"4\"");
+        mockMvc.perform(patch("/api/pets/{id}", 1L)
+                        .with(user(userDetails))
+                        .content(requestBody)
+                        .contentType("application/merge-patch+json"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"4\""));
+        Mockito.verify(petService).patch(eq(1L), argThat(patch ->
+                patch.getName().equals(Optional.of("tralalelo tralalelovich"))
+                        && patch.getBreed().isEmpty()
+                        && patch.getColor() == null
+                        && patch.getFriendIds() == null), isNull());
+    }
+
     @Test
     void getPetsWithFilters_WhenAdmin_ShouldReturnPets() throws Exception {
         PetDto petDto = createTestPet(999L);
@@ -159,11 +204,11 @@ public class PetControllerAdminTest {
     @Test
     void deleteById_WhenAdmin_ShouldDeletePet() throws Exception {
         long petId = 1L;
-        Mockito.doNothing().when(petService).deleteById(petId);
+        Mockito.doNothing().when(petService).deleteById(petId, null);
         mockMvc.perform(delete("/api/pets/{id}", petId)
                         .with(user(userDetails)))
                 .andExpect(status().isNoContent());
-        Mockito.verify(petService, times(1)).deleteById(petId);
+        Mockito.verify(petService, times(1)).deleteById(petId, null);
     }
 
     @Test
@@ -180,7 +225,7 @@ public class PetControllerAdminTest {
                 "friendIds": [52, 239, 100]
                 }
                 """;
-        Mockito.doNothing().when(petService).deleteByEntity(petDto);
+        Mockito.doNothing().when(petService).deleteByEntity(petDto, null);
         mockMvc.perform(delete("/api/pets")
                         .with(user(userDetails))
                         .content(requestBody)
@@ -188,7 +233,7 @@ public class PetControllerAdminTest {
                 .andExpect(status().isNoContent());
         Mockito.verify(petService, times(1)).deleteByEntity(
                 argThat(dto -> dto.getId().equals(1L) && dto.getName().equals("tralalelo tralala")
-                ));
+                ), isNull());
     }
 
     @Test
@@ -198,6 +243,38 @@ public class PetControllerAdminTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void deleteWithFilter_WhenAdmin_ShouldReturnDeletedCount() throws Exception {
+        when(petService.deleteWithFilter("Shark", Color.WHITE)).thenReturn(42L);
+        mockMvc.perform(delete("/api/pets")
+                        .with(user(userDetails))
+                        .param("breed", "Shark")
+                        .param("color", "WHITE"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(42));
+        Mockito.verify(petService, times(1)).deleteWithFilter("Shark", Color.WHITE);
+    }
+
+
+    @Test
+    void importPets_WhenAdmin_ShouldReturnChunkResults() throws Exception {
+        String requestBody = """
+                {"name": "tralalelo tralala", "breed": "Shark", "color": "WHITE", "owner": 999}
+                {"name": "bombardiro crocodilo", "breed": "Crocodile", "color": "BROWN", "owner": 999}
+                """;
+        when(petImportService.importPets(any(), eq(1))).thenReturn(List.of(
+                new BulkChunkResultDto(0, 1, 1, null),
+                new BulkChunkResultDto(1, 1, 1, null)));
+
+        mockMvc.perform(post("/api/pets/bulk")
+                        .with(user(userDetails))
+                        .param("chunkSize", "1")
+                        .content(requestBody)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].chunk").value(1))
+                .andExpect(jsonPath("$[1].imported").value(1));
+    }
 
     private PetDto createTestPet(Long ownerId) {
         PetDto pet = new PetDto(
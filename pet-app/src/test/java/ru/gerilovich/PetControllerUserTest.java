@@ -9,18 +9,24 @@ import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.gerilovich.config.SecurityConfig;
 import ru.gerilovich.controllers.PetController;
+import ru.gerilovich.dto.FriendPathDto;
 import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.dto.PetRecommendationDto;
 import ru.gerilovich.models.Color;
 import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.PetImportService;
 import ru.gerilovich.services.PetService;
 import ru.gerilovich.services.auth.OwnerDetailsService;
+import ru.gerilovich.services.graph.FriendGraphService;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -31,6 +37,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -43,6 +50,12 @@ public class PetControllerUserTest {
     @MockitoBean
     private PetService petService;
 
+    @MockitoBean
+    private PetImportService petImportService;
+
+    @MockitoBean
+    private FriendGraphService friendGraphService;
+
     @MockitoBean
     private OwnerDetailsService ownerDetailsService;
 
@@ -55,8 +68,6 @@ public class PetControllerUserTest {
 
     @BeforeEach
     void setUp() {
-        when(petService.getIsPetOwner(anyLong(), anyLong()))
-                .thenReturn(false);
         when(ownerDetailsService.loadUserByUsername(anyString()))
                 .thenReturn(userDetails);
     }
@@ -71,7 +82,6 @@ public class PetControllerUserTest {
     @Test
     void getPetById_WhenOwner_ShouldReturnPet() throws Exception {
         PetDto pet = createTestPet(30L);
-        when(petService.getIsPetOwner(1L, 30L)).thenReturn(true);
         when(petService.getById(1L)).thenReturn(pet);
 
         mockMvc.perform(get("/api/pets/{id}", 1L)
@@ -84,12 +94,36 @@ public class PetControllerUserTest {
     void getPetById_WhenNotOwner_ShouldReturnPet() throws Exception {
         PetDto pet = createTestPet(999L);
         when(petService.getById(1L)).thenReturn(pet);
-        when(petService.getIsPetOwner(1L, 30L)).thenReturn(false);
 
         mockMvc.perform(get("/api/pets/1").with(user(userDetails)))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void getPetById_WhenETagMatches_ShouldReturnNotModified() throws Exception {
+        when(petService.getPetETag(1L)).thenReturn("\"7\"");
+
+        mockMvc.perform(get("/api/pets/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"7\"")
+                        .with(user(userDetails)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        Mockito.verify(petService, times(0)).getById(anyLong());
+    }
+
+    @Test
+    void getPetById_WhenETagIsStale_ShouldReturnPetWithCurrentETag() throws Exception {
+        when(petService.getPetETag(1L)).thenReturn("\"8\"");
+        when(petService.getById(1L)).thenReturn(createTestPet(999L));
+
+        mockMvc.perform(get("/api/pets/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"7\"")
+                        .with(user(userDetails)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"8\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+    }
+
     @Test
     void update_WhenOwner_ShouldUpdatePet() throws Exception {
         PetDto updatedPetDto = new PetDto();
@@ -113,8 +147,7 @@ public class PetControllerUserTest {
                 }
                 """;
 
-        when(petService.getIsPetOwner(1L, 30L)).thenReturn(true);
-        when(petService.update(any(), any())).thenReturn(updatedPetDto);
+        when(petService.update(eq(1L), any(), eq(30L))).thenReturn(updatedPetDto);
         mockMvc.perform(put("/api/pets/1", updatedPetDto)
                         .with(user(userDetails))
                         .content(requestBody)
@@ -151,13 +184,13 @@ public class PetControllerUserTest {
                 }
                 """;
 
-        when(petService.getIsPetOwner(1L, 30L)).thenReturn(false);
-        when(petService.update(any(), any())).thenReturn(updatedPetDto);
+        when(petService.update(eq(1L), any(), eq(30L))).thenThrow(new AccessDeniedException("Pet 1 belongs to another owner"));
         mockMvc.perform(put("/api/pets/1", updatedPetDto)
                         .with(user(userDetails))
                         .content(requestBody)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isForbidden());
+        Mockito.verify(petService, times(1)).update(eq(1L), any(), eq(30L));
     }
 
     @Test
@@ -222,23 +255,22 @@ public class PetControllerUserTest {
     @Test
     void deleteById_WhenOwner_ShouldDeletePet() throws Exception {
         long petId = 1L;
-        when(petService.getIsPetOwner(1L, 30L)).thenReturn(true);
-        Mockito.doNothing().when(petService).deleteById(petId);
+        Mockito.doNothing().when(petService).deleteById(petId, 30L);
         mockMvc.perform(delete("/api/pets/{id}", petId)
                         .with(user(userDetails)))
                 .andExpect(status().isNoContent());
-        Mockito.verify(petService, times(1)).deleteById(petId);
+        Mockito.verify(petService, times(1)).deleteById(petId, 30L);
     }
 
     @Test
     void deleteById_WhenNotOwner_ShouldReturnForbidden() throws Exception {
         long petId = 1L;
-        when(petService.getIsPetOwner(1L, 999L)).thenReturn(false);
-        Mockito.doNothing().when(petService).deleteById(petId);
+        Mockito.doThrow(new AccessDeniedException("Pet 1 belongs to another owner"))
+                .when(petService).deleteById(petId, 30L);
         mockMvc.perform(delete("/api/pets/{id}", petId)
                         .with(user(userDetails)))
                 .andExpect(status().isForbidden());
-        Mockito.verify(petService, times(0)).deleteById(petId);
+        Mockito.verify(petService, times(1)).deleteById(petId, 30L);
     }
 
     @Test
@@ -255,8 +287,7 @@ public class PetControllerUserTest {
                 "friendIds": [52, 239, 100]
                 }
                 """;
-        when(petService.getIsPetOwner(1L, 30L)).thenReturn(true);
-        Mockito.doNothing().when(petService).deleteByEntity(petDto);
+        Mockito.doNothing().when(petService).deleteByEntity(petDto, 30L);
         mockMvc.perform(delete("/api/pets")
                         .with(user(userDetails))
                         .content(requestBody)
@@ -264,12 +295,11 @@ public class PetControllerUserTest {
                 .andExpect(status().isNoContent());
         Mockito.verify(petService, times(1)).deleteByEntity(
                 argThat(dto -> dto.getId().equals(1L) && dto.getName().equals("tralalelo tralala")
-                ));
+                ), eq(30L));
     }
 
     @Test
     void deleteByEntity_WhenNotOwner_ShouldReturnForbidden() throws Exception {
-        PetDto petDto = createTestPet(999L);
         String requestBody = """
                 {
                 "id": 1,
@@ -281,15 +311,16 @@ public class PetControllerUserTest {
                 "friendIds": [52, 239, 100]
                 }
                 """;
-        Mockito.doNothing().when(petService).deleteByEntity(petDto);
+        Mockito.doThrow(new AccessDeniedException("Pet 1 belongs to another owner"))
+                .when(petService).deleteByEntity(any(), eq(30L));
         mockMvc.perform(delete("/api/pets")
                         .with(user(userDetails))
                         .content(requestBody)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isForbidden());
-        Mockito.verify(petService, times(0)).deleteByEntity(
+        Mockito.verify(petService, times(1)).deleteByEntity(
                 argThat(dto -> dto.getId().equals(1L) && dto.getName().equals("tralalelo tralala")
-                ));
+                ), eq(30L));
     }
 
     @Test
@@ -299,6 +330,60 @@ public class PetControllerUserTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    void deleteWithFilter_WhenNotAdmin_ShouldReturnForbidden() throws Exception {
+        mockMvc.perform(delete("/api/pets")
+                        .with(user(userDetails))
+                        .param("breed", "Shark"))
+                .andExpect(status().isForbidden());
+        Mockito.verify(petService, times(0)).deleteWithFilter(any(), any());
+    }
+
+    @Test
+    void importPets_WhenNotAdmin_ShouldReturnForbidden() throws Exception {
+        mockMvc.perform(post("/api/pets/bulk")
+                        .with(user(userDetails))
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isForbidden());
+        Mockito.verify(petImportService, times(0)).importPets(any(), anyInt());
+    }
+
+    @Test
+    void getFriendPath_WhenUser_ShouldReturnPath() throws Exception {
+        when(friendGraphService.getShortestPath(52L, 239L))
+                .thenReturn(new FriendPathDto(52L, 239L, List.of(52L, 77L, 239L), 2));
+
+        mockMvc.perform(get("/api/pets/52/friends/path/239")
+                        .with(user(userDetails)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.path", containsInAnyOrder(52, 77, 239)))
+                .andExpect(jsonPath("$.degreesOfSeparation").value(2));
+    }
+
+    @Test
+    void getFriendNeighbourhood_WhenTooManyHops_ShouldNotQueryGraph() throws Exception {
+        mockMvc.perform(get("/api/pets/52/friends")
+                        .param("hops", "7")
+                        .with(user(userDetails)))
+                .andExpect(status().is4xxClientError());
+        Mockito.verify(friendGraphService, times(0)).getNeighbourhood(anyLong(), anyInt());
+    }
+
+    @Test
+    void getFriendRecommendations_WhenUser_ShouldReturnRankedPets() throws Exception {
+        when(friendGraphService.getRecommendations(52L, 2, 0.5, 0))
+                .thenReturn(List.of(new PetRecommendationDto(77L, 3, 3.5), new PetRecommendationDto(91L, 3, 3)));
+
+        mockMvc.perform(get("/api/pets/52/recommendations")
+                        .param("limit", "2")
+                        .param("breedBoost", "0.5")
+                        .with(user(userDetails)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].petId").value(77))
+                .andExpect(jsonPath("$[1].mutualFriends").value(3));
+    }
+
     private PetDto createTestPet(Long ownerId) {
         PetDto pet = new PetDto(
                 "tralalelo tralala",
@@ -0,0 +1,119 @@
+package ru.gerilovich;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.access.AccessDeniedException;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.PetService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The owner scope the controller passes to the mutations: the caller's owner id, or null for admins.
+ * A pet may only be changed within the scope of its own owner, a pet without an owner only by admins.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pet_ownership;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PetOwnershipTest {
+    @Autowired
+    private PetService petService;
+    @Autowired
+    private PetDao petDao;
+    @Autowired
+    private OwnerDao ownerDao;
+
+    private Long aliceId;
+    private Long bobId;
+
+    @BeforeAll
+    void seed() {
+        aliceId = ownerDao.save(owner("alice")).getId();
+        bobId = ownerDao.save(owner("bob")).getId();
+    }
+
+    @Test
+    void update_WhenScopeIsTheOwner_ShouldUpdatePet() {
+        Long petId = save("rex", aliceId);
+
+        assertEquals("rex junior", petService.update(petId, pet("rex junior", aliceId), aliceId).getName());
+    }
+
+    @Test
+    void update_WhenScopeIsAnotherOwner_ShouldDenyAndKeepPet() {
+        Long petId = save("rex", aliceId);
+
+        assertThrows(AccessDeniedException.class, () -> petService.update(petId, pet("stolen", bobId), bobId));
+        assertEquals("rex", petService.getById(petId).getName());
+        assertEquals(aliceId, petService.getById(petId).getOwner());
+    }
+
+    @Test
+    void deleteById_WhenScopeIsAnotherOwner_ShouldDenyAndKeepPet() {
+        Long petId = save("rex", aliceId);
+
+        assertThrows(AccessDeniedException.class, () -> petService.deleteById(petId, bobId));
+        assertThrows(AccessDeniedException.class, () -> petService.deleteByEntity(petService.getById(petId), bobId));
+        assertTrue(petDao.existsById(petId));
+    }
+
+    @Test
+    void deleteById_WhenPetHasNoOwner_ShouldDenyEveryOwner() {
+        Long petId = save("stray", null);
+
+        assertThrows(AccessDeniedException.class, () -> petService.deleteById(petId, aliceId));
+        assertTrue(petDao.existsById(petId));
+    }
+
+    @Test
+    void mutations_WithoutScope_ShouldApplyToAnyPet() {
+        Long ownedId = save("rex", aliceId);
+        Long strayId = save("stray", null);
+
+        assertEquals("rex junior", petService.update(ownedId, pet("rex junior", aliceId), null).getName());
+        petService.deleteById(strayId, null);
+        assertFalse(petDao.existsById(strayId));
+    }
+
+    @Test
+    void deleteById_WhenPetMissing_ShouldReportNotFoundBeforeOwnership() {
+        assertThrows(EntityNotFoundException.class, () -> petService.deleteById(Long.MAX_VALUE, aliceId));
+    }
+
+    private Long save(String name, Long ownerId) {
+        return petService.save(pet(name, ownerId)).getId();
+    }
+
+    private static PetDto pet(String name, Long ownerId) {
+        return new PetDto(name, LocalDate.of(2020, 1, 1), "husky", Color.WHITE, ownerId, new ArrayList<>());
+    }
+
+    private static Owner owner(String name) {
+        Owner owner = new Owner();
+        owner.setName(name);
+        owner.setBirthDate(LocalDate.of(1990, 1, 15));
+        owner.setRole(Role.USER);
+        owner.setPassword("password");
+        owner.setPets(new ArrayList<>());
+        return owner;
+    }
+}
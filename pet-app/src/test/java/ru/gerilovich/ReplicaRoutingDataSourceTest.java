@@ -0,0 +1,96 @@
+package ru.gerilovich;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.gerilovich.config.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routes between two embedded databases standing in for the primary and a replica. Each holds a
+ * row naming itself, so a query shows where it ran.
+ */
+public class ReplicaRoutingDataSourceTest {
+    private static final DataSource PRIMARY = node("routing_primary");
+    private static final DataSource REPLICA = node("routing_replica");
+    private static final DataSource UNREACHABLE = new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/unreachable");
+
+    private DelegatingDataSource replica;
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transaction;
+
+    @BeforeAll
+    static void createNodes() {
+        for (DataSource node : List.of(PRIMARY, REPLICA)) {
+            new JdbcTemplate(node).execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(32))");
+            new JdbcTemplate(node).execute("DELETE FROM node");
+        }
+        new JdbcTemplate(PRIMARY).update("INSERT INTO node VALUES ('primary')");
+        new JdbcTemplate(REPLICA).update("INSERT INTO node VALUES ('replica')");
+    }
+
+    @BeforeEach
+    void setUp() {
+        replica = new DelegatingDataSource(REPLICA);
+        routing = new ReplicaRoutingDataSource(PRIMARY, List.of(replica));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldRunOnReplica() {
+        assertEquals("replica", currentNode(true));
+    }
+
+    @Test
+    void readWriteTransaction_ShouldRunOnPrimary() {
+        assertEquals("primary", currentNode(false));
+    }
+
+    @Test
+    void statementOutsideTransaction_ShouldRunOnPrimary() {
+        assertEquals("primary", jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    @Test
+    void readOnlyTransaction_WhenReplicaIsDown_ShouldFallBackToPrimary() {
+        replica.setTargetDataSource(UNREACHABLE);
+
+        assertEquals("primary", currentNode(true));
+        assertEquals(0, routing.availableReplicas());
+    }
+
+    @Test
+    void healthCheck_WhenReplicaRecovers_ShouldRouteReadsToItAgain() {
+        replica.setTargetDataSource(UNREACHABLE);
+        routing.checkReplicas();
+        assertEquals("primary", currentNode(true));
+
+        replica.setTargetDataSource(REPLICA);
+        routing.checkReplicas();
+
+        assertEquals(1, routing.availableReplicas());
+        assertEquals("replica", currentNode(true));
+    }
+
+    private String currentNode(boolean readOnly) {
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private static DataSource node(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,286 @@
+package ru.gerilovich;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dao.specifications.PetSpecifications;
+import ru.gerilovich.dto.OwnerDto;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.dto.PetPatchDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.OwnerService;
+import ru.gerilovich.services.PetImportService;
+import ru.gerilovich.services.PetService;
+import ru.gerilovich.services.exceptions.StatementLimitExceededException;
+import ru.gerilovich.services.sql.SqlStatementCounter;
+import ru.gerilovich.services.sql.StatementCount;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the statement count of the list endpoints against N+1 regressions. Every request in this
+ * context fails when it exceeds the per-request limits. The second-level cache is emptied before each
+ * test, so the limits are the cold-cache counts and don't depend on the order the tests run in.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement_count;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.sql.max-statements-per-request=10",
+        "app.sql.max-repeats-per-request=3",
+        "app.sql.fail-on-violation=true"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SqlStatementCountTest {
+    private static final int OWNERS = 30;
+    private static final int PETS_PER_OWNER = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private SqlStatementCounter statementCounter;
+    @Autowired
+    private OwnerDao ownerDao;
+    @Autowired
+    private PetDao petDao;
+    @Autowired
+    private OwnerService ownerService;
+    @Autowired
+    private PetService petService;
+    @Autowired
+    private PetImportService petImportService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    void seed() {
+        List<Owner> owners = new ArrayList<>();
+        for (int o = 0; o < OWNERS; o++) {
+            Owner owner = new Owner();
+            owner.setName("owner-" + o);
+            owner.setBirthDate(LocalDate.of(1990, 1, 15));
+            owner.setRole(Role.USER);
+            owner.setPassword("password");
+            owner.setPets(new ArrayList<>());
+            owners.add(owner);
+        }
+        List<PetDto> pets = new ArrayList<>();
+        for (Owner owner : ownerDao.saveAll(owners)) {
+            for (int i = 0; i < PETS_PER_OWNER; i++) {
+                pets.add(new PetDto(owner.getName() + "-pet-" + i, LocalDate.of(2020, 1, 1), "breed-" + i,
+                        Color.WHITE, owner.getId(), new ArrayList<>()));
+            }
+        }
+        petImportService.importPets(pets.iterator(), 100);
+    }
+
+    @BeforeEach
+    void evictSecondLevelCache() {
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void getAllOwners_ShouldLoadPetsOfAllOwnersAtOnce() {
+        try (StatementCount count = statementCounter.open()) {
+            assertEquals(OWNERS, ownerService.getAll().size());
+            // owners, then the pets of all of them in one batch
+            count.assertAtMost(2);
+        }
+    }
+
+    @Test
+    void getPetsWithFilter_ShouldLoadFriendsOfThePageAtOnce() {
+        try (StatementCount count = statementCounter.open()) {
+            assertEquals(20, petService.getPetsWithFilter(0, 20, null, null, "breed-0", null, null, null).getContent().size());
+            // the page, its count and the friends of the page in one batch
+            count.assertAtMost(3).assertNoRepeatsOver(1);
+        }
+    }
+
+    @Test
+    void getPetsWithFilter_WithFields_ShouldSelectOnlyRequestedFields() {
+        try (StatementCount count = statementCounter.open()) {
+            List<Map<String, Object>> pets = petService.getPetsWithFilter(0, 20, null, null, "breed-0", null, null, null,
+                    List.of("name", "owner")).getContent();
+            assertEquals(20, pets.size());
+            assertEquals(List.of("name", "owner"), List.copyOf(pets.getFirst().keySet()));
+            count.assertAtMost(2);
+            // The owner id is the foreign key column of pets, no join needed.
+            assertTrue(count.statements().stream().noneMatch(sql -> sql.contains("owners")), count.statements()::toString);
+        }
+    }
+
+    @Test
+    void getPetsWithFilter_WithFriendIds_ShouldReadFriendsOfThePageAtOnce() {
+        try (StatementCount count = statementCounter.open()) {
+            List<Map<String, Object>> pets = petService.getPetsWithFilter(0, 20, null, null, "breed-0", null, null, null,
+                    List.of("id", "friendIds")).getContent();
+            assertEquals(List.of(), pets.getFirst().get("friendIds"));
+            count.assertAtMost(3).assertNoRepeatsOver(1);
+        }
+    }
+
+    @Test
+    @WithMockUser
+    void filterEndpoint_ShouldStayWithinStatementLimit() throws Exception {
+        try (StatementCount count = statementCounter.open()) {
+            mockMvc.perform(get("/api/pets/filter").param("breed", "breed-1").param("size", "20"))
+                    .andExpect(status().isOk());
+            // count and id/version rows for the ETag, then the page, its count and the friends batch
+            count.assertAtMost(5);
+        }
+    }
+
+    @Test
+    void deleteById_ShouldNotDependOnFriendCount() {
+        Owner owner = ownerDao.findByName("owner-0").orElseThrow();
+        List<Long> friendIds = ownerDao.getPetsByOwnerId(owner.getId()).stream().map(pet -> pet.getId()).toList();
+        Long popularId = petService.save(new PetDto("popular", LocalDate.of(2020, 1, 1), "popular", Color.BLACK,
+                owner.getId(), new ArrayList<>(friendIds))).getId();
+        List<PetDto> fans = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            fans.add(new PetDto("fan-" + i, LocalDate.of(2020, 1, 1), "fan", Color.BLACK,
+                    owner.getId(), new ArrayList<>(List.of(popularId))));
+        }
+        petImportService.importPets(fans.iterator(), 100);
+        Long fanId = petDao.findAll(PetSpecifications.hasBreed("fan")).getFirst().getId();
+        Long bystanderId = ownerDao.getPetsByOwnerId(ownerDao.findByName("owner-1").orElseThrow().getId()).getFirst().getId();
+        petDao.findById(fanId);
+        petDao.findById(bystanderId);
+
+        try (StatementCount count = statementCounter.open()) {
+            petService.deleteById(popularId, null);
+            // the pet, its owner and the owner's version, the fans' ids, their versions and friendships
+            // to the pet, then the pet's own friendships and row
+            count.assertAtMost(8).assertNoRepeatsOver(1);
+        }
+        assertFalse(entityManagerFactory.getCache().contains(Pet.class, fanId));
+        assertTrue(entityManagerFactory.getCache().contains(Pet.class, bystanderId));
+    }
+
+    @Test
+    void patch_WithFriendIds_ShouldBumpFormerFriendsWithoutDependingOnFriendCount() {
+        Owner owner = ownerDao.findByName("owner-2").orElseThrow();
+        Long hubId = petService.save(new PetDto("hub", LocalDate.of(2020, 1, 1), "hub", Color.BLACK,
+                owner.getId(), new ArrayList<>())).getId();
+        List<PetDto> mutuals = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            mutuals.add(new PetDto("mutual-" + i, LocalDate.of(2020, 1, 1), "mutual", Color.BLACK,
+                    owner.getId(), new ArrayList<>(List.of(hubId))));
+        }
+        petImportService.importPets(mutuals.iterator(), 100);
+        List<Long> mutualIds = petDao.findAll(PetSpecifications.hasBreed("mutual")).stream().map(Pet::getId).toList();
+        PetPatchDto befriend = new PetPatchDto();
+        befriend.setFriendIds(Optional.of(mutualIds));
+        petService.patch(hubId, befriend, null);
+        Long version = petDao.findVersionById(mutualIds.getFirst()).orElseThrow();
+        PetPatchDto unfriend = new PetPatchDto();
+        unfriend.setFriendIds(Optional.of(List.of()));
+
+        try (StatementCount count = statementCounter.open()) {
+            petService.patch(hubId, unfriend, null);
+            // the pet and its friends, the ids of those listing it back, their friendships to it and
+            // versions, then the pet's own friendships and version
+            count.assertAtMost(7).assertNoRepeatsOver(1);
+        }
+        assertEquals(version + 1, petDao.findVersionById(mutualIds.getFirst()).orElseThrow());
+        assertTrue(petDao.findReferrerIdsOf(List.of(hubId)).isEmpty());
+    }
+
+    @Test
+    void forEachPet_ShouldReadFriendIdsPerChunk() {
+        Owner owner = ownerDao.findByName("owner-1").orElseThrow();
+        List<Long> friendIds = ownerDao.getPetsByOwnerId(owner.getId()).stream().map(pet -> pet.getId()).sorted().toList();
+        Long streamedId = petService.save(new PetDto("streamed", LocalDate.of(2020, 1, 1), "streamed", Color.BROWN,
+                null, new ArrayList<>(friendIds))).getId();
+
+        List<PetDto> exported = new ArrayList<>();
+        try (StatementCount count = statementCounter.open()) {
+            petService.forEachPet(exported::add);
+            count.assertAtMost(2);
+        }
+        assertEquals(petDao.count(), exported.size());
+        PetDto streamed = exported.stream().filter(pet -> pet.getId().equals(streamedId)).findFirst().orElseThrow();
+        assertEquals(friendIds, streamed.getFriendIds());
+    }
+
+    @Test
+    void forEachOwner_ShouldReadPetIdsPerChunk() {
+        List<OwnerDto> exported = new ArrayList<>();
+        try (StatementCount count = statementCounter.open()) {
+            ownerService.forEachOwner(exported::add);
+            count.assertAtMost(2);
+        }
+        assertEquals(OWNERS, exported.size());
+        Owner owner = ownerDao.findByName("owner-2").orElseThrow();
+        List<Long> petIds = ownerDao.getPetsByOwnerId(owner.getId()).stream().map(pet -> pet.getId()).sorted().toList();
+        assertEquals(petIds, exported.stream().filter(dto -> dto.getId().equals(owner.getId())).findFirst()
+                .orElseThrow().getPetIds());
+    }
+
+    @Test
+    @WithMockUser
+    void streamPetsEndpoint_ShouldWriteOneLinePerPet() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/pets").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(petDao.count(), body.lines().count());
+    }
+
+    @Test
+    @WithMockUser
+    void streamOwnersEndpoint_ShouldWriteOneLinePerOwner() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/owners").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(OWNERS, body.lines().count());
+    }
+
+    @Test
+    void repeatedStatement_ShouldBeReported() {
+        try (StatementCount count = statementCounter.open()) {
+            for (int o = 0; o < 4; o++) {
+                ownerDao.findByName("owner-" + o);
+            }
+            assertEquals(4, count.maxRepeats());
+            assertThrows(StatementLimitExceededException.class, () -> count.assertNoRepeatsOver(3));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.gerilovich;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.PetImportService;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares p99 latency and throughput of platform-thread and virtual-thread request handling.
+ * Excluded from the default build, run with {@code mvn test -Pload}.
+ * <p>
+ * Meant to run against a real database given with {@code -Dload.datasource.url/username/password}:
+ * the gain comes from requests blocked on database I/O no longer holding a thread. Without it the
+ * test falls back to in-memory H2, where queries never block on I/O and both modes come out about
+ * the same, so that run only checks that the virtual profile starts and serves requests. The schema
+ * is created and dropped, so the database must be a disposable one.
+ */
+@Slf4j
+@Tag("load")
+public class ThreadModeLoadTest {
+    private static final int USERS = Integer.getInteger("load.users", 400);
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 5));
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Long.getLong("load.seconds", 20));
+    private static final int PETS = 2000;
+    private static final String ADMIN = "load-admin";
+
+    @Test
+    void compareThreadModes() throws Exception {
+        if (System.getProperty("load.datasource.url") == null) {
+            log.warn("load.datasource.url is not set, running on in-memory H2: the thread modes will not differ much");
+        }
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        log.info(String.format("%n%-9s %12s %10s %10s %8s%n%s%n%s", "mode", "requests/s", "p50 ms", "p99 ms", "errors",
+                platform.format("platform"), virtual.format("virtual")));
+
+        assertEquals(0, platform.errors(), "platform-thread run had failed requests");
+        assertEquals(0, virtual.errors(), "virtual-thread run had failed requests");
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = LoadTestSupport.start("load_" + virtualThreads,
+                virtualThreads ? "virtual" : null, "server.tomcat.threads.max=50")) {
+            List<Long> petIds = seed(context);
+            return load(LoadTestSupport.port(context), petIds);
+        }
+    }
+
+    private List<Long> seed(ConfigurableApplicationContext context) {
+        String hash = context.getBean(PasswordEncoder.class).encode(LoadTestSupport.PASSWORD);
+        Long adminId = context.getBean(OwnerDao.class).save(LoadTestSupport.owner(ADMIN, Role.ADMIN, hash)).getId();
+
+        List<PetDto> pets = new ArrayList<>(PETS);
+        for (int i = 0; i < PETS; i++) {
+            pets.add(LoadTestSupport.pet("pet-" + i, i, adminId, new ArrayList<>()));
+        }
+        context.getBean(PetImportService.class).importPets(pets.iterator(), 500);
+        return context.getBean(OwnerDao.class).getPetsByOwnerId(adminId).stream().map(pet -> pet.getId()).toList();
+    }
+
+    // Closed model: every user sends its next request as soon as the previous one completes.
+    private Result load(int port, List<Long> petIds) throws Exception {
+        String authorization = LoadTestSupport.basic(ADMIN);
+        HttpClient client = LoadTestSupport.httpClient();
+        long warmupEnds = System.nanoTime() + WARMUP.toNanos();
+        long measurementEnds = warmupEnds + MEASUREMENT.toNanos();
+        AtomicLong errors = new AtomicLong();
+
+        List<Future<LoadTestSupport.Latencies>> users = new ArrayList<>(USERS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < USERS; u++) {
+                users.add(executor.submit(() -> {
+                    LoadTestSupport.Latencies latencies = new LoadTestSupport.Latencies();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < measurementEnds) {
+                        HttpRequest request = LoadTestSupport.request(port, path(random, petIds), authorization).build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        if (start >= warmupEnds) {
+                            latencies.record(System.nanoTime() - start);
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+        }
+
+        long[] all = users.stream().map(LoadTestSupport::join)
+                .flatMapToLong(latencies -> Arrays.stream(latencies.toArray()))
+                .sorted()
+                .toArray();
+        return new Result(all.length / (double) MEASUREMENT.toSeconds(), LoadTestSupport.percentile(all, 0.50),
+                LoadTestSupport.percentile(all, 0.99), errors.get());
+    }
+
+    private static String path(ThreadLocalRandom random, List<Long> petIds) {
+        if (random.nextInt(4) == 0) {
+            return "/api/pets/filter?size=20&breed=breed-" + random.nextInt(20);
+        }
+        return "/api/pets/" + petIds.get(random.nextInt(petIds.size()));
+    }
+
+    private record Result(double throughput, double p50, double p99, long errors) {
+        String format(String mode) {
+            return String.format("%-9s %12.1f %10.2f %10.2f %8d", mode, throughput, p50, p99, errors);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.gerilovich;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.gerilovich.services.auth.TimedPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimedPasswordEncoderTest {
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void matches_ShouldRecordVerificationsByResult() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordEncoder encoder = new TimedPasswordEncoder(NoOpPasswordEncoder.getInstance(), registry);
+
+        String hash = encoder.encode("secret");
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertFalse(encoder.matches("also wrong", hash));
+
+        assertEquals(1, count(registry, "encode", "none"));
+        assertEquals(1, count(registry, "verify", "match"));
+        assertEquals(2, count(registry, "verify", "mismatch"));
+    }
+
+    private static long count(SimpleMeterRegistry registry, String operation, String result) {
+        return registry.get("auth.password.hashing")
+                .tag("operation", operation)
+                .tag("result", result)
+                .timer()
+                .count();
+    }
+}
@@ -0,0 +1,186 @@
+package ru.gerilovich;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.gerilovich.config.DtoProtobufHttpMessageConverter;
+import ru.gerilovich.config.SecurityConfig;
+import ru.gerilovich.config.WireFormatConfig;
+import ru.gerilovich.controllers.PetController;
+import ru.gerilovich.dto.CursorPageDto;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.models.Color;
+import ru.gerilovich.models.auth.CustomUserDetails;
+import ru.gerilovich.services.PetImportService;
+import ru.gerilovich.services.PetService;
+import ru.gerilovich.services.auth.OwnerDetailsService;
+import ru.gerilovich.services.graph.FriendGraphService;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(PetController.class)
+@Import({SecurityConfig.class, WireFormatConfig.class})
+public class WireFormatTest {
+    private static final MediaType PROTOBUF = DtoProtobufHttpMessageConverter.APPLICATION_PROTOBUF;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private PetService petService;
+
+    @MockitoBean
+    private PetImportService petImportService;
+
+    @MockitoBean
+    private FriendGraphService friendGraphService;
+
+    @MockitoBean
+    private OwnerDetailsService ownerDetailsService;
+
+    private final CustomUserDetails userDetails = new CustomUserDetails(
+            30L,
+            "masha",
+            "$2a$12$JNR4LEIEn11ZTLF23QUlLu9NlaU4wEsxtzEGc4Wn7XQtD5fjm78Ye",
+            List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))
+    );
+
+    // Dates as ISO strings, as the application's mapper writes them.
+    private final ObjectMapper protobufMapper = Jackson2ObjectMapperBuilder.json()
+            .factory(new ProtobufFactory())
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+
+    @BeforeEach
+    void setUp() {
+        when(ownerDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+    }
+
+    @Test
+    void getPetById_WithoutAccept_ShouldReturnJson() throws Exception {
+        when(petService.getById(1L)).thenReturn(createTestPet());
+
+        mockMvc.perform(get("/api/pets/1").with(user(userDetails)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void getPetById_WhenCborAccepted_ShouldReturnCbor() throws Exception {
+        when(petService.getById(1L)).thenReturn(createTestPet());
+
+        byte[] body = mockMvc.perform(get("/api/pets/1").with(user(userDetails)).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        PetDto pet = cborMapper.readValue(body, PetDto.class);
+        assertEquals("tralalelo tralala", pet.getName());
+        assertEquals(List.of(52L, 239L, 100L), pet.getFriendIds());
+    }
+
+    @Test
+    void getPetById_WhenProtobufAccepted_ShouldReturnPetMessage() throws Exception {
+        when(petService.getById(1L)).thenReturn(createTestPet());
+
+        byte[] body = mockMvc.perform(get("/api/pets/1").with(user(userDetails)).accept(PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        PetDto pet = protobufMapper.readerFor(PetDto.class).with(schema().forType("Pet")).readValue(body);
+        assertEquals(1L, pet.getId());
+        assertEquals(LocalDate.of(2006, 4, 8), pet.getBirthDate());
+        assertEquals(Color.WHITE, pet.getColor());
+        assertEquals(List.of(52L, 239L, 100L), pet.getFriendIds());
+    }
+
+    @Test
+    void getPetsAfterCursor_WhenProtobufAccepted_ShouldReturnPageMessage() throws Exception {
+        when(petService.getPetsAfter(any(), anyInt(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(new CursorPageDto<>(List.of(createTestPet()), "next"));
+
+        byte[] body = mockMvc.perform(get("/api/pets/filter/cursor").with(user(userDetails)).accept(PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Map<?, ?> page = protobufMapper.readerFor(Map.class).with(schema().forType("PetPage")).readValue(body);
+        assertEquals("next", page.get("nextCursor"));
+        assertEquals(1, ((List<?>) page.get("content")).size());
+    }
+
+    @Test
+    void getPetsWithFilter_WhenProtobufAccepted_ShouldReturnOffsetPageMessage() throws Exception {
+        when(petService.getPetsWithFilterETag(anyInt(), anyInt(), any(), any(), any(), any(), any(), any()))
+                .thenReturn("\"3\"");
+        when(petService.getPetsWithFilter(anyInt(), anyInt(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(new PageImpl<>(List.of(createTestPet()), PageRequest.of(2, 5), 11));
+
+        byte[] body = mockMvc.perform(get("/api/pets/filter").param("page", "2").with(user(userDetails)).accept(PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Map<?, ?> page = protobufMapper.readerFor(Map.class).with(schema().forType("PetPage")).readValue(body);
+        assertEquals(11L, ((Number) page.get("totalElements")).longValue());
+        assertEquals(2, ((Number) page.get("number")).intValue());
+        assertEquals(5, ((Number) page.get("size")).intValue());
+        assertEquals(1, ((List<?>) page.get("content")).size());
+    }
+
+    @Test
+    void createPet_WithProtobufBody_ShouldReadPet() throws Exception {
+        byte[] body = protobufMapper.writer(schema().forType("Pet")).writeValueAsBytes(createTestPet());
+        when(petService.save(any(PetDto.class))).thenReturn(createTestPet());
+
+        mockMvc.perform(post("/api/pets").with(user(userDetails)).contentType(PROTOBUF).content(body))
+                .andExpect(status().isCreated());
+        verify(petService).save(argThat(pet -> pet.getName().equals("tralalelo tralala")
+                && pet.getOwner().equals(999L) && pet.getFriendIds().equals(List.of(52L, 239L, 100L))));
+    }
+
+    private static NativeProtobufSchema schema() throws IOException {
+        return ProtobufSchemaLoader.std.loadNative(new ClassPathResource("proto/pets.proto").getURL());
+    }
+
+    private PetDto createTestPet() {
+        PetDto pet = new PetDto("tralalelo tralala", LocalDate.of(2006, 4, 8), "Shark", Color.WHITE, 999L,
+                List.of(52L, 239L, 100L));
+        pet.setId(1L);
+        return pet;
+    }
+}
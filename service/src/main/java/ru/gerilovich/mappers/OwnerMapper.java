@@ -9,11 +9,23 @@ import java.util.List;
 
 public class OwnerMapper {
     public OwnerDto toDto(@NonNull Owner owner) {
+        OwnerDto ownerDto = toDtoWithoutPets(owner);
+        owner.getPets().forEach(pet -> ownerDto.getPetIds().add(pet.getId()));
+        return ownerDto;
+    }
+
+    /** Takes the pet ids as read by the caller, the pets collection is not initialized. */
+    public OwnerDto toDto(@NonNull Owner owner, List<Long> petIds) {
+        OwnerDto ownerDto = toDtoWithoutPets(owner);
+        ownerDto.getPetIds().addAll(petIds);
+        return ownerDto;
+    }
+
+    private OwnerDto toDtoWithoutPets(Owner owner) {
         OwnerDto ownerDto = new OwnerDto();
         ownerDto.setId(owner.getId());
         ownerDto.setName(owner.getName());
         ownerDto.setBirthDate(owner.getBirthDate());
-        owner.getPets().forEach(pet -> ownerDto.getPetIds().add(pet.getId()));
         ownerDto.setPassword(owner.getPassword());
         ownerDto.setRole(owner.getRole());
         return ownerDto;
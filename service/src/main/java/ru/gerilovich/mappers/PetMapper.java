@@ -9,6 +9,21 @@ import java.util.List;
 
 public class PetMapper {
     public PetDto toDto(@NonNull Pet pet) {
+        PetDto petDto = toDtoWithoutFriends(pet);
+        if (!pet.getFriends().isEmpty()) {
+            pet.getFriends().forEach(friend -> petDto.getFriendIds().add(friend.getId()));
+        }
+        return petDto;
+    }
+
+    /** Takes the friend ids as read by the caller, the friends collection is not initialized. */
+    public PetDto toDto(@NonNull Pet pet, List<Long> friendIds) {
+        PetDto petDto = toDtoWithoutFriends(pet);
+        petDto.getFriendIds().addAll(friendIds);
+        return petDto;
+    }
+
+    private PetDto toDtoWithoutFriends(Pet pet) {
         PetDto petDto = new PetDto();
         petDto.setId(pet.getId());
         petDto.setName(pet.getName());
@@ -18,9 +33,6 @@ public class PetMapper {
         if (pet.getOwner() != null) {
             petDto.setOwner(pet.getOwner().getId());
         }
-        if (!pet.getFriends().isEmpty()) {
-            pet.getFriends().forEach(friend -> petDto.getFriendIds().add(friend.getId()));
-        }
         return petDto;
     }
 
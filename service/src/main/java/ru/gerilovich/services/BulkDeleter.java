@@ -0,0 +1,115 @@
+package ru.gerilovich.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.services.graph.FriendGraphService;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Deletes pets and owners with set-based statements over chunks of ids, each chunk in its own
+ * transaction, so no entity is loaded and no transaction grows with the table. A failing chunk stops
+ * the run, the chunks before it stay deleted.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BulkDeleter {
+    static final int CHUNK_SIZE = EntityBatchResolver.IN_CHUNK_SIZE;
+
+    private final PetDao petDao;
+    private final OwnerDao ownerDao;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final FriendGraphService friendGraphService;
+
+    public long deletePets(Specification<Pet> filter) {
+        return deleteInChunks(Pet.class, filter, "pets", petIds -> {
+            petDao.incrementVersionOfReferrersOf(petIds);
+            ownerDao.incrementVersionOfOwnersOf(petIds);
+            petDao.deleteAllFriendEdgesOf(petIds);
+            petDao.deleteAllByIdInBatch(petIds);
+        }, friendGraphService::reloadAfterCommit);
+    }
+
+    /** Owned pets go first, as with the Owner.pets cascade. */
+    public long deleteAllOwners() {
+        deletePets((root, query, cb) -> cb.isNotNull(root.get("owner")));
+        return deleteInChunks(Owner.class, Specification.where(null), "owners", ownerDao::deleteAllByIdInBatch, () -> {
+        });
+    }
+
+    // afterDeletion runs once some chunk was deleted, also when a later one fails: those before it committed.
+    private <T> long deleteInChunks(Class<T> type, Specification<T> filter, String label, Consumer<List<Long>> deletion,
+                                    Runnable afterDeletion) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        long total = count(type, filter);
+        long deleted = 0;
+        long after = Long.MIN_VALUE;
+        List<Long> chunk;
+        try {
+            do {
+                long from = after;
+                chunk = transaction.execute(status -> {
+                    List<Long> ids = nextIds(type, filter, from);
+                    if (!ids.isEmpty()) {
+                        deletion.accept(ids);
+                    }
+                    return ids;
+                });
+                if (!chunk.isEmpty()) {
+                    deleted += chunk.size();
+                    after = chunk.get(chunk.size() - 1);
+                    log.info("Deleted {}/{} {}", deleted, total, label);
+                }
+            } while (chunk.size() == CHUNK_SIZE);
+        } finally {
+            if (deleted > 0) {
+                afterDeletion.run();
+            }
+        }
+        return deleted;
+    }
+
+    // Keyed on the last deleted id rather than always taking the first chunk, so a row that survives
+    // its delete cannot make the loop spin.
+    private <T> List<Long> nextIds(Class<T> type, Specification<T> filter, long after) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(type);
+        Path<Long> id = root.get("id");
+        Predicate predicate = filter.toPredicate(root, query, cb);
+        Predicate next = cb.greaterThan(id, after);
+        query.select(id)
+                .where(predicate == null ? next : cb.and(predicate, next))
+                .orderBy(cb.asc(id));
+        return entityManager.createQuery(query).setMaxResults(CHUNK_SIZE).getResultList();
+    }
+
+    private <T> long count(Class<T> type, Specification<T> filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(type);
+        Predicate predicate = filter.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(query.isDistinct() ? cb.countDistinct(root) : cb.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
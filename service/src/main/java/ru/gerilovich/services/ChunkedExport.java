@@ -0,0 +1,48 @@
+package ru.gerilovich.services;
+
+import jakarta.persistence.EntityManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Walks a forward-only cursor for the NDJSON exports. Rows are handed over in chunks, so the ids of
+ * a collection can be read with one query per chunk instead of one per row, and the persistence
+ * context is cleared after every chunk, so memory stays flat regardless of the table size.
+ */
+final class ChunkedExport {
+    static final int CHUNK_SIZE = 500;
+
+    private ChunkedExport() {
+    }
+
+    static <T> void forEachChunk(Stream<T> rows, EntityManager entityManager, Consumer<List<T>> consumer) {
+        Iterator<T> iterator = rows.iterator();
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == CHUNK_SIZE) {
+                consumer.accept(chunk);
+                chunk.clear();
+                entityManager.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+
+    /** Groups (id, element id) rows by the id. */
+    static Map<Long, List<Long>> groupIds(List<Object[]> pairs) {
+        Map<Long, List<Long>> ids = new HashMap<>();
+        for (Object[] pair : pairs) {
+            ids.computeIfAbsent((Long) pair[0], id -> new ArrayList<>()).add((Long) pair[1]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.gerilovich.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.gerilovich.dto.BulkChunkResultDto;
+import ru.gerilovich.services.exceptions.DuplicateOwnerException;
+import ru.gerilovich.services.exceptions.InvalidRequestParameterException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Splits a bulk import into chunks, each written and committed in its own transaction. A failing
+ * chunk is rolled back alone and reported in the result, the next chunks are still imported.
+ */
+@Slf4j
+@Component
+public class ChunkedImporter {
+    private final EntityManager entityManager;
+    private final TransactionTemplate transaction;
+
+    public ChunkedImporter(EntityManager entityManager, PlatformTransactionManager transactionManager) {
+        this.entityManager = entityManager;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    public <T> List<BulkChunkResultDto> importAll(Iterator<T> items, int chunkSize, Consumer<List<T>> write) {
+        return importAll(items, chunkSize, chunk -> null, (chunk, prepared) -> write.accept(chunk));
+    }
+
+    /**
+     * Same, with a preparation step per chunk that runs before the transaction, so no connection is
+     * held during it. Its result is passed to the write.
+     */
+    public <T, P> List<BulkChunkResultDto> importAll(Iterator<T> items, int chunkSize, Function<List<T>, P> prepare,
+                                                     BiConsumer<List<T>, P> write) {
+        List<BulkChunkResultDto> results = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        while (items.hasNext()) {
+            chunk.add(items.next());
+            if (chunk.size() == chunkSize) {
+                results.add(importChunk(results.size(), chunk, prepare, write));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.add(importChunk(results.size(), chunk, prepare, write));
+        }
+        return results;
+    }
+
+    private <T, P> BulkChunkResultDto importChunk(int index, List<T> chunk, Function<List<T>, P> prepare,
+                                                  BiConsumer<List<T>, P> write) {
+        try {
+            P prepared = prepare.apply(chunk);
+            transaction.executeWithoutResult(status -> {
+                write.accept(chunk, prepared);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            return new BulkChunkResultDto(index, chunk.size(), chunk.size(), null);
+        } catch (RuntimeException e) {
+            return new BulkChunkResultDto(index, chunk.size(), 0, describe(index, e));
+        }
+    }
+
+    // Messages of the application's own exceptions are written for clients, anything else may carry
+    // SQL or internals and is only logged.
+    private static String describe(int index, RuntimeException e) {
+        if (e instanceof EntityNotFoundException || e instanceof DuplicateOwnerException
+                || e instanceof InvalidRequestParameterException) {
+            return e.getMessage();
+        }
+        log.warn("Import of chunk {} failed", index, e);
+        if (e instanceof DataIntegrityViolationException || e instanceof ConstraintViolationException) {
+            return "Chunk violates a database constraint";
+        }
+        return "Chunk could not be imported";
+    }
+}
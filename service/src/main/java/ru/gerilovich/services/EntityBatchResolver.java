@@ -0,0 +1,78 @@
+package ru.gerilovich.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Resolves ids referenced by a request in batches and reports every missing id at once. Ids are looked
+ * up in the persistence context and the second-level cache first, only the rest are queried.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityBatchResolver {
+    public static final int IN_CHUNK_SIZE = 500;
+
+    private final EntityManager entityManager;
+
+    public List<Pet> resolvePets(Collection<Long> ids) {
+        return resolve(ids, chunk -> multiLoad(Pet.class, chunk), Pet::getId, "Pets");
+    }
+
+    public List<Owner> resolveOwners(Collection<Long> ids) {
+        return resolve(ids, chunk -> multiLoad(Owner.class, chunk), Owner::getId, "Owners");
+    }
+
+    public Owner resolveOwner(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return resolveOwners(List.of(id)).getFirst();
+    }
+
+    private <T> List<T> multiLoad(Class<T> entityClass, List<Long> ids) {
+        return entityManager.unwrap(Session.class)
+                .byMultipleIds(entityClass)
+                .enableSessionCheck(true)
+                .enableOrderedReturn(false)
+                .multiLoad(ids);
+    }
+
+    private <T> List<T> resolve(Collection<Long> ids, Function<List<Long>, List<T>> loader,
+                                Function<T, Long> idOf, String entityName) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Long, T> found = new HashMap<>(distinctIds.size() * 2);
+        for (int from = 0; from < distinctIds.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + IN_CHUNK_SIZE, distinctIds.size()));
+            // Missing ids may come back as null entries.
+            for (T entity : loader.apply(chunk)) {
+                if (entity != null) {
+                    found.put(idOf.apply(entity), entity);
+                }
+            }
+        }
+
+        List<Long> missingIds = distinctIds.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!missingIds.isEmpty()) {
+            throw new EntityNotFoundException(entityName + " not found with ids: " + missingIds);
+        }
+        List<T> result = new ArrayList<>(distinctIds.size());
+        distinctIds.forEach(id -> result.add(found.get(id)));
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.gerilovich.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Builds strong ETags from {@code @Version} columns, so a conditional GET is answered by reading ids
+ * and versions only, without loading, mapping or serializing entities.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityTags {
+    private final EntityManager entityManager;
+
+    public static String of(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    /**
+     * Tags the page the given filter selects: total count plus the id and version of every row on it.
+     * The pageable must be sorted the same way as the query serving the page.
+     */
+    public <T> String forPage(Class<T> type, Specification<T> filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Long> count = cb.createQuery(Long.class);
+        Root<T> countRoot = count.from(type);
+        Predicate countPredicate = filter.toPredicate(countRoot, count, cb);
+        if (countPredicate != null) {
+            count.where(countPredicate);
+        }
+        count.select(count.isDistinct() ? cb.countDistinct(countRoot) : cb.count(countRoot));
+        long total = entityManager.createQuery(count).getSingleResult();
+
+        CriteriaQuery<Tuple> rows = cb.createTupleQuery();
+        Root<T> root = rows.from(type);
+        Predicate predicate = filter.toPredicate(root, rows, cb);
+        if (predicate != null) {
+            rows.where(predicate);
+        }
+        rows.multiselect(root.get("id"), root.get("version"));
+        rows.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        List<Tuple> page = entityManager.createQuery(rows)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        StringBuilder state = new StringBuilder().append(total);
+        for (Tuple row : page) {
+            state.append(';').append(row.get(0)).append(':').append(row.get(1));
+        }
+        return "\"" + hash(state.toString()) + "\"";
+    }
+
+    private static String hash(String state) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(state.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.gerilovich.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.models.Pet;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps {@code @Version} columns, and so ETags, in step with changes Hibernate does not see as changes
+ * of the entity itself: a pet joining or leaving {@code Owner.pets}, or pet_friends rows removed by id.
+ * The native statements for the latter leave the second-level cache alone, the pets they touch are
+ * evicted by id after commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityVersions {
+    private static final String PET_FRIENDS = Pet.class.getName() + ".friends";
+
+    private final PetDao petDao;
+    private final EntityManager entityManager;
+
+    /**
+     * Increments the version of each given managed entity right away, with one UPDATE each, so a version
+     * read later in the transaction, after its flush, is the one that commits.
+     */
+    public void bump(Collection<?> entities) {
+        entities.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(entity -> entityManager.lock(entity, LockModeType.PESSIMISTIC_FORCE_INCREMENT));
+    }
+
+    public void bump(Object entity) {
+        if (entity != null) {
+            bump(List.of(entity));
+        }
+    }
+
+    /**
+     * Removes every friendship pointing at pets that are about to be deleted and bumps the pets that
+     * listed them, which would otherwise lose those friends through the foreign key cascade unnoticed.
+     */
+    public void detachIncomingFriendships(Collection<Long> petIds) {
+        List<Long> ids = petIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<Long> deleted = new HashSet<>(ids);
+        for (int from = 0; from < ids.size(); from += EntityBatchResolver.IN_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + EntityBatchResolver.IN_CHUNK_SIZE, ids.size()));
+            List<Pet> referrers = petDao.findReferrersOf(chunk).stream()
+                    .filter(referrer -> !deleted.contains(referrer.getId()))
+                    .toList();
+            bump(referrers);
+            petDao.deleteAllFriendEdgesTo(chunk);
+            evictFriendsAfterCommit(referrers.stream().map(Pet::getId).toList());
+        }
+    }
+
+    /**
+     * Same for a single pet, without loading the pets that list it: they are bumped by id, one UPDATE per
+     * chunk of ids. Only for callers that hold none of those pets in the persistence context, their versions
+     * would go stale.
+     */
+    public void detachIncomingFriendships(long petId) {
+        List<Long> referrerIds = petDao.findReferrerIdsOf(List.of(petId)).stream()
+                .filter(referrerId -> referrerId != petId)
+                .sorted()
+                .toList();
+        if (referrerIds.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < referrerIds.size(); from += EntityBatchResolver.IN_CHUNK_SIZE) {
+            petDao.incrementVersions(referrerIds.subList(from, Math.min(from + EntityBatchResolver.IN_CHUNK_SIZE, referrerIds.size())));
+        }
+        petDao.deleteAllFriendEdgesTo(List.of(petId));
+        evictAfterCommit(referrerIds, true);
+    }
+
+    /**
+     * Removes the friendships the given former friends of a pet hold back to it and bumps those friends
+     * with one UPDATE per chunk, in id order so concurrent replacements lock the rows in the same order.
+     * The bumped friends are detached, their managed versions would be stale: the caller must not hold
+     * them in any collection it still flushes.
+     */
+    public void detachReverseFriendships(long petId, Collection<Pet> friends) {
+        Map<Long, Pet> byId = friends.stream()
+                .filter(friend -> friend.getId() != null && friend.getId() != petId)
+                .collect(Collectors.toMap(Pet::getId, Function.identity(), (first, second) -> first));
+        if (byId.isEmpty()) {
+            return;
+        }
+        List<Long> referrerIds = petDao.findReferrerIdsOf(List.of(petId)).stream()
+                .filter(byId::containsKey)
+                .sorted()
+                .toList();
+        for (int from = 0; from < referrerIds.size(); from += EntityBatchResolver.IN_CHUNK_SIZE) {
+            List<Long> chunk = referrerIds.subList(from, Math.min(from + EntityBatchResolver.IN_CHUNK_SIZE, referrerIds.size()));
+            petDao.deleteFriendEdgesTo(petId, chunk);
+            petDao.incrementVersions(chunk);
+        }
+        Cache cache = cache();
+        for (Long referrerId : referrerIds) {
+            entityManager.detach(byId.get(referrerId));
+            // Right away as well, so loading the pet again in this transaction reads the new version.
+            cache.evictEntityData(Pet.class, referrerId);
+        }
+        evictAfterCommit(referrerIds, true);
+    }
+
+    /** Evicts the cached friends collections of the given pets once the transaction commits. */
+    public void evictFriendsAfterCommit(Collection<Long> petIds) {
+        evictAfterCommit(petIds, false);
+    }
+
+    // After commit, so an entry cached from a concurrent read of the old rows is dropped as well.
+    private void evictAfterCommit(Collection<Long> petIds, boolean withEntities) {
+        if (petIds.isEmpty()) {
+            return;
+        }
+        Cache cache = cache();
+        List<Long> ids = List.copyOf(petIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (Long id : ids) {
+                    cache.evictCollectionData(PET_FRIENDS, id);
+                    if (withEntities) {
+                        cache.evictEntityData(Pet.class, id);
+                    }
+                }
+            }
+        });
+    }
+
+    private Cache cache() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+    }
+}
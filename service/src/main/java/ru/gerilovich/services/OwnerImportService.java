@@ -0,0 +1,99 @@
+package ru.gerilovich.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dto.BulkChunkResultDto;
+import ru.gerilovich.dto.OwnerDto;
+import ru.gerilovich.mappers.OwnerMapper;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.models.Role;
+import ru.gerilovich.services.exceptions.DuplicateOwnerException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registers owners in chunks. Per chunk, names are checked against the table with one IN query,
+ * passwords are hashed in parallel on a dedicated pool with no connection held, and only then
+ * the owners are inserted in a short transaction.
+ */
+@Service
+@RequiredArgsConstructor
+public class OwnerImportService {
+    private final OwnerDao ownerDao;
+    private final EntityBatchResolver entityBatchResolver;
+    private final ChunkedImporter chunkedImporter;
+    private final PasswordEncoder passwordEncoder;
+    private final ForkJoinPool passwordHashingPool;
+    private final EntityVersions entityVersions;
+    private final OwnerMapper ownerMapper = new OwnerMapper();
+
+    public List<BulkChunkResultDto> importOwners(Iterator<OwnerDto> owners, int chunkSize) {
+        return chunkedImporter.importAll(owners, chunkSize, this::prepareChunk, this::importChunk);
+    }
+
+    // Runs before the chunk's transaction: returns the password hashes.
+    private List<String> prepareChunk(List<OwnerDto> chunk) {
+        rejectDuplicateNames(chunk);
+        return hashPasswords(chunk);
+    }
+
+    private void importChunk(List<OwnerDto> chunk, List<String> hashes) {
+        Map<Long, Pet> pets = entityBatchResolver.resolvePets(chunk.stream()
+                        .map(OwnerDto::getPetIds)
+                        .filter(Objects::nonNull)
+                        .flatMap(List::stream)
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Pet::getId, Function.identity()));
+
+        entityVersions.bump(pets.values().stream().map(Pet::getOwner).toList());
+
+        List<Owner> newOwners = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            OwnerDto dto = chunk.get(i);
+            dto.setId(null);
+            dto.setRole(Role.USER);
+            dto.setPassword(hashes.get(i));
+            List<Pet> ownerPets = dto.getPetIds() == null
+                    ? new ArrayList<>()
+                    : dto.getPetIds().stream().map(pets::get).collect(Collectors.toCollection(ArrayList::new));
+            newOwners.add(ownerMapper.toEntity(dto, ownerPets));
+        }
+        ownerDao.saveAll(newOwners);
+    }
+
+    private void rejectDuplicateNames(List<OwnerDto> chunk) {
+        Set<String> names = new HashSet<>();
+        Set<String> duplicates = new HashSet<>();
+        for (OwnerDto dto : chunk) {
+            if (!names.add(dto.getName())) {
+                duplicates.add(dto.getName());
+            }
+        }
+        duplicates.addAll(ownerDao.findExistingNames(names));
+        if (!duplicates.isEmpty()) {
+            throw new DuplicateOwnerException("Owners already exist with names " + duplicates);
+        }
+    }
+
+    // The parallel stream runs on the pool it is submitted from, so hashing never competes
+    // with the common pool and is bounded by the pool's parallelism.
+    private List<String> hashPasswords(List<OwnerDto> chunk) {
+        return passwordHashingPool.submit(() -> chunk.parallelStream()
+                        .map(dto -> passwordEncoder.encode(dto.getPassword()))
+                        .toList())
+                .join();
+    }
+}
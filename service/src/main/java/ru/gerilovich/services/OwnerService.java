@@ -1,31 +1,64 @@
 package ru.gerilovich.services;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.specifications.OwnerSpecifications;
+import ru.gerilovich.dto.CursorPageDto;
 import ru.gerilovich.dto.OwnerDto;
+import ru.gerilovich.dto.OwnerPatchDto;
 import ru.gerilovich.mappers.OwnerMapper;
 import ru.gerilovich.models.Owner;
 import ru.gerilovich.models.Pet;
+import ru.gerilovich.services.auth.AuthenticationCache;
 import ru.gerilovich.services.exceptions.DuplicateOwnerException;
+import ru.gerilovich.services.exceptions.InvalidRequestParameterException;
+import ru.gerilovich.services.graph.FriendGraphService;
+import ru.gerilovich.services.pagination.KeysetCursor;
+import ru.gerilovich.services.pagination.KeysetSort;
+import ru.gerilovich.services.projection.FieldProjection;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "owner.service", histogram = true)
 public class OwnerService {
+    // The password hash is not selectable.
+    private static final FieldProjection<Owner> OWNER_FIELDS = FieldProjection.of(Owner.class)
+            .column("name")
+            .column("birthDate")
+            .column("role")
+            .idCollection("petIds", "pets");
+
     private final OwnerDao ownerDao;
     private final OwnerMapper ownerMapper = new OwnerMapper();
+    private final EntityManager entityManager;
     private final PasswordEncoder passwordEncoder;
+    private final AuthenticationCache authenticationCache;
+    private final EntityBatchResolver entityBatchResolver;
+    private final FriendGraphService friendGraphService;
+    private final EntityVersions entityVersions;
+    private final EntityTags entityTags;
+    private final BulkDeleter bulkDeleter;
 
     @Transactional
     public OwnerDto save(OwnerDto entity) {
@@ -33,87 +66,185 @@ public class OwnerService {
             throw new DuplicateOwnerException("Owner already exists with name " + entity.getName());
         }
         entity.setPassword(passwordEncoder.encode(entity.getPassword()));
-        Owner owner = ownerMapper.toEntity(entity, ownerDao.findPetsByIds(entity.getPetIds()));
+        List<Pet> pets = entityBatchResolver.resolvePets(entity.getPetIds());
+        entityVersions.bump(pets.stream().map(Pet::getOwner).toList());
+        Owner owner = ownerMapper.toEntity(entity, pets);
+        owner.setId(null);
         Owner savedOwner = ownerDao.save(owner);
         return ownerMapper.toDto(savedOwner);
     }
 
     @Transactional
     public void deleteById(Long id) {
-        try {
-            ownerDao.deleteById(id);
-        } catch (IllegalArgumentException e) {
+        authenticationCache.invalidate(id);
+        if (id == null) {
             throw new EntityNotFoundException("Owner wasn't found by id" + id);
         }
+        ownerDao.findById(id).ifPresent(this::delete);
     }
 
     @Transactional
     public void deleteByEntity(OwnerDto entity) {
-        Owner owner = ownerMapper.toEntity(entity, getPetsByOwnerId(entity.getId()));
-        ownerDao.delete(owner);
+        authenticationCache.invalidate(entity.getId());
+        if (entity.getId() != null) {
+            ownerDao.findById(entity.getId()).ifPresent(this::delete);
+        }
     }
 
-    @Transactional
+    // Not transactional, the deleter commits chunk by chunk. Logins during the run may cache an owner
+    // that is deleted afterwards, hence the second invalidation.
     public void deleteAll() {
-        ownerDao.deleteAll();
+        authenticationCache.invalidateAll();
+        bulkDeleter.deleteAllOwners();
+        authenticationCache.invalidateAll();
     }
 
     @Transactional
     public OwnerDto update(Long id, OwnerDto entity) {
         Owner owner = ownerDao.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Owner not found with id: " + id));
+        if (entity.getName() != null || entity.getPassword() != null) {
+            authenticationCache.invalidate(id);
+        }
         if (entity.getName() != null) owner.setName(entity.getName());
         if (entity.getBirthDate() != null) owner.setBirthDate(entity.getBirthDate());
         if (entity.getPassword() != null) owner.setPassword(passwordEncoder.encode(entity.getPassword()));
 
         if (!entity.getPetIds().isEmpty()) {
-            owner.getPets().forEach(pet -> pet.setOwner(null));
-            owner.getPets().clear();
-            List<Pet> pets = ownerDao.findPetsByIds(entity.getPetIds());
-            for (Pet pet : pets) {
-                pet.setOwner(owner);
-            }
-            owner.getPets().addAll(pets);
+            replacePets(owner, entity.getPetIds());
         }
         return ownerMapper.toDto(ownerDao.save(owner));
     }
 
+    /**
+     * Applies a JSON Merge Patch and returns the new ETag. Only the columns present in the patch are
+     * written, and the pets collection is only loaded when the patch replaces it.
+     */
     @Transactional
+    public String patch(long id, OwnerPatchDto patch) {
+        Owner owner = ownerDao.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Owner not found with id: " + id));
+        if (patch.getName() != null || patch.getPassword() != null) {
+            authenticationCache.invalidate(id);
+        }
+        if (patch.getName() != null) {
+            owner.setName(patch.getName()
+                    .orElseThrow(() -> new InvalidRequestParameterException("Owner name cannot be removed")));
+        }
+        if (patch.getBirthDate() != null) owner.setBirthDate(patch.getBirthDate().orElse(null));
+        if (patch.getPassword() != null) {
+            owner.setPassword(passwordEncoder.encode(patch.getPassword()
+                    .orElseThrow(() -> new InvalidRequestParameterException("Owner password cannot be removed"))));
+        }
+        if (patch.getPetIds() != null) replacePets(owner, patch.getPetIds().orElse(List.of()));
+        // Changed columns and collections increment the version at flush, bumps already did.
+        entityManager.flush();
+        return EntityTags.of(owner.getVersion());
+    }
+
+    @Transactional(readOnly = true)
     public OwnerDto getById(long id) {
         Owner owner = ownerDao.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Owner not found with id: " + id));
         return ownerMapper.toDto(owner);
     }
 
-    @Transactional
+    /** Only the requested fields of the owner, read without loading the entity. */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getById(long id, List<String> fields) {
+        return OWNER_FIELDS.find(entityManager, fields, OwnerSpecifications.hasId(id), Pageable.unpaged()).stream()
+                .findFirst()
+                .orElseThrow(() -> new EntityNotFoundException("Owner not found with id: " + id));
+    }
+
+    @Transactional(readOnly = true)
     public List<OwnerDto> getAll() {
         return ownerDao.findAll().stream().map(ownerMapper::toDto).toList();
     }
 
+    // Pet ids are read per chunk of owners, the pets collections are never initialized.
+    @Transactional(readOnly = true)
+    public void forEachOwner(Consumer<OwnerDto> consumer) {
+        try (Stream<Owner> owners = ownerDao.streamAll()) {
+            ChunkedExport.forEachChunk(owners, entityManager, chunk -> {
+                Map<Long, List<Long>> petIds = ChunkedExport.groupIds(
+                        ownerDao.findPetIdsOf(chunk.stream().map(Owner::getId).toList()));
+                chunk.forEach(owner -> consumer.accept(
+                        ownerMapper.toDto(owner, petIds.getOrDefault(owner.getId(), List.of()))));
+            });
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public String getOwnerETag(long id) {
+        return ownerDao.findVersionById(id).map(EntityTags::of).orElse(null);
+    }
 
-    @Transactional
+    @Transactional(readOnly = true)
+    public String getOwnersWithFilterETag(int page, int size, String name, LocalDate birthdate, List<Long> petIds) {
+        return entityTags.forPage(Owner.class, OwnerSpecifications.filter(name, birthdate, petIds), filterPage(page, size));
+    }
+
+    @Transactional(readOnly = true)
     public Page<OwnerDto> getOwnersWithFilter(int page, int size, String name, LocalDate birthdate, List<Long> petIds) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Owner> ownerPage;
-        if (petIds != null && !petIds.isEmpty()) {
-            ownerPage = ownerDao.findByPetsIdIn(petIds, pageable);
-        } else if (name != null && !name.isEmpty()) {
-            ownerPage = ownerDao.findByName(name, pageable);
-        } else if (birthdate != null) {
-            ownerPage = ownerDao.findByBirthDate(birthdate, pageable);
-        } else {
-            ownerPage = ownerDao.findAll(pageable);
-        }
+        Pageable pageable = filterPage(page, size);
+        Page<Owner> ownerPage = ownerDao.findAll(OwnerSpecifications.filter(name, birthdate, petIds), pageable);
         List<OwnerDto> ownerDtos = ownerPage.getContent().stream().map(ownerMapper::toDto).toList();
         return new PageImpl<>(ownerDtos, pageable, ownerPage.getTotalElements());
     }
 
-    private List<Pet> getPetsByOwnerId(Long id) {
-        List<Pet> petsByOwnerId = ownerDao.getPetsByOwnerId(id);
-        if (petsByOwnerId.isEmpty()) {
-            return new ArrayList<>();
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getOwnersWithFilter(int page, int size, String name, LocalDate birthdate,
+                                                         List<Long> petIds, List<String> fields) {
+        Pageable pageable = filterPage(page, size);
+        Specification<Owner> specification = OwnerSpecifications.filter(name, birthdate, petIds);
+        return PageableExecutionUtils.getPage(OWNER_FIELDS.find(entityManager, fields, specification, pageable),
+                pageable, () -> ownerDao.count(specification));
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDto<OwnerDto> getOwnersAfter(String after, int size, KeysetSort sort, String name,
+                                                  LocalDate birthdate, List<Long> petIds) {
+        return KeysetCursor.fetch(ownerDao,
+                OwnerSpecifications.filter(name, birthdate, petIds),
+                after, size, sort, Owner::getId, Owner::getName, ownerMapper::toDto);
+    }
+
+    // Ordered by id so a page, and its ETag, are stable between requests.
+    private static Pageable filterPage(int page, int size) {
+        return PageRequest.of(page, size, Sort.by("id"));
+    }
+
+    // Pets dropped from the collection are deleted as orphans.
+    private void replacePets(Owner owner, List<Long> petIds) {
+        List<Pet> pets = entityBatchResolver.resolvePets(petIds);
+        Set<Long> keptIds = new HashSet<>(petIds);
+        List<Long> orphanIds = owner.getPets().stream()
+                .map(Pet::getId)
+                .filter(petId -> !keptIds.contains(petId))
+                .toList();
+        entityVersions.detachIncomingFriendships(orphanIds);
+        friendGraphService.refreshAfterCommit(orphanIds);
+        entityVersions.bump(owner);
+        entityVersions.bump(pets.stream()
+                .map(Pet::getOwner)
+                .filter(previous -> previous != null && !owner.getId().equals(previous.getId()))
+                .toList());
+
+        owner.getPets().forEach(pet -> pet.setOwner(null));
+        owner.getPets().clear();
+        for (Pet pet : pets) {
+            pet.setOwner(owner);
         }
-        return petsByOwnerId.stream().toList();
+        owner.getPets().addAll(pets);
+    }
+
+    // Owned pets are removed with the owner.
+    private void delete(Owner owner) {
+        List<Long> petIds = owner.getPets().stream().map(Pet::getId).toList();
+        entityVersions.detachIncomingFriendships(petIds);
+        friendGraphService.refreshAfterCommit(petIds);
+        ownerDao.delete(owner);
     }
 
 }
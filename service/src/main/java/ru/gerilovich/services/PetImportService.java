@@ -0,0 +1,67 @@
+package ru.gerilovich.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dto.BulkChunkResultDto;
+import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.mappers.PetMapper;
+import ru.gerilovich.models.Owner;
+import ru.gerilovich.models.Pet;
+import ru.gerilovich.services.graph.FriendGraphService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports pets in chunks, each committed in its own transaction. Inserts of pets and pet_friends
+ * rows are sent as JDBC batches.
+ */
+@Service
+@RequiredArgsConstructor
+public class PetImportService {
+    private final PetDao petDao;
+    private final EntityBatchResolver entityBatchResolver;
+    private final ChunkedImporter chunkedImporter;
+    private final FriendGraphService friendGraphService;
+    private final EntityVersions entityVersions;
+    private final PetMapper petMapper = new PetMapper();
+
+    public List<BulkChunkResultDto> importPets(Iterator<PetDto> pets, int chunkSize) {
+        return chunkedImporter.importAll(pets, chunkSize, this::importChunk);
+    }
+
+    private void importChunk(List<PetDto> chunk) {
+        Map<Long, Pet> friends = byId(entityBatchResolver.resolvePets(chunk.stream()
+                .map(PetDto::getFriendIds)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .toList()), Pet::getId);
+        Map<Long, Owner> owners = byId(entityBatchResolver.resolveOwners(chunk.stream()
+                .map(PetDto::getOwner)
+                .toList()), Owner::getId);
+
+        entityVersions.bump(owners.values());
+
+        List<Pet> newPets = new ArrayList<>(chunk.size());
+        for (PetDto dto : chunk) {
+            List<Pet> petFriends = dto.getFriendIds() == null
+                    ? new ArrayList<>()
+                    : dto.getFriendIds().stream().map(friends::get).collect(Collectors.toCollection(ArrayList::new));
+            Pet pet = petMapper.toEntity(dto, petFriends, dto.getOwner() == null ? null : owners.get(dto.getOwner()));
+            pet.setId(null);
+            newPets.add(pet);
+        }
+        petDao.saveAll(newPets);
+        friendGraphService.refreshAfterCommit(newPets.stream().map(Pet::getId).toList());
+    }
+
+    private static <T> Map<Long, T> byId(List<T> entities, Function<T, Long> idOf) {
+        return entities.stream().collect(Collectors.toMap(idOf, Function.identity()));
+    }
+}
@@ -1,169 +1,264 @@
 package ru.gerilovich.services;
 
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.gerilovich.dao.OwnerDao;
 import ru.gerilovich.dao.PetDao;
+import ru.gerilovich.dao.specifications.PetSpecifications;
+import ru.gerilovich.dto.CursorPageDto;
 import ru.gerilovich.dto.PetDto;
+import ru.gerilovich.dto.PetPatchDto;
 import ru.gerilovich.mappers.PetMapper;
 import ru.gerilovich.models.Color;
 import ru.gerilovich.models.Owner;
 import ru.gerilovich.models.Pet;
+import ru.gerilovich.services.exceptions.InvalidRequestParameterException;
+import ru.gerilovich.services.graph.FriendGraphService;
+import ru.gerilovich.services.pagination.KeysetCursor;
+import ru.gerilovich.services.pagination.KeysetSort;
+import ru.gerilovich.services.projection.FieldProjection;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service("petService")
 @RequiredArgsConstructor
+@Timed(value = "pet.service", histogram = true)
 public class PetService {
+    private static final FieldProjection<Pet> PET_FIELDS = FieldProjection.of(Pet.class)
+            .column("name")
+            .column("birthDate")
+            .column("breed")
+            .column("color")
+            .column("owner", root -> root.get("owner").get("id"))
+            .idCollection("friendIds", "friends");
+
     private final PetDao petDao;
-    private final OwnerDao ownerDao;
+    private final EntityBatchResolver entityBatchResolver;
     private final PetMapper petMapper = new PetMapper();
+    private final EntityManager entityManager;
+    private final FriendGraphService friendGraphService;
+    private final EntityVersions entityVersions;
+    private final EntityTags entityTags;
+    private final BulkDeleter bulkDeleter;
 
     @Transactional
     public PetDto save(PetDto entity) {
         Pet pet = petMapper.toEntity(entity,
-                getPets(entity.getFriendIds()),
-                getOwner(entity.getOwner()));
-        return petMapper.toDto(petDao.save(pet));
+                entityBatchResolver.resolvePets(entity.getFriendIds()),
+                entityBatchResolver.resolveOwner(entity.getOwner()));
+        pet.setId(null);
+        entityVersions.bump(pet.getOwner());
+        PetDto saved = petMapper.toDto(petDao.save(pet));
+        friendGraphService.refreshAfterCommit(saved.getId());
+        return saved;
     }
 
+    /**
+     * Deletes the pet. With an owner scope the pet must belong to that owner, pass null for admins.
+     */
     @Transactional
-    public void deleteById(long id) {
-        Pet pet = petDao.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Pet wasn't found by id" + id));
-
-        Owner owner = pet.getOwner();
-        if (owner != null) {
-            owner.getPets().remove(pet);
-            pet.setOwner(null);
-        }
-
-        List<Pet> oldFriends = new ArrayList<>(pet.getFriends());
-        for (Pet friend : oldFriends) {
-            friend.getFriends().remove(pet);
-            pet.getFriends().remove(friend);
-        }
-        petDao.saveAll(oldFriends);
-        petDao.delete(pet);
+    public void deleteById(long id, Long ownerScope) {
+        delete(findForMutation(id, ownerScope));
     }
 
     @Transactional
-    public void deleteByEntity(PetDto entity) {
-        Pet pet = petMapper.toEntity(entity, getPets(entity.getFriendIds()), getOwner(entity.getOwner()));
-
-        Owner owner = pet.getOwner();
-        if (owner != null) {
-            owner.getPets().remove(pet);
-            pet.setOwner(null);
-        }
-
-        List<Pet> oldFriends = new ArrayList<>(pet.getFriends());
-        for (Pet friend : oldFriends) {
-            friend.getFriends().remove(pet);
-            pet.getFriends().remove(friend);
+    public void deleteByEntity(PetDto entity, Long ownerScope) {
+        if (entity.getId() != null) {
+            petDao.findById(entity.getId())
+                    .map(pet -> checkOwner(pet, ownerScope))
+                    .ifPresent(this::delete);
         }
-        petDao.saveAll(oldFriends);
-        petDao.delete(pet);
     }
 
-    @Transactional
+    // Not transactional, the deleter commits chunk by chunk.
     public void deleteAll() {
-        petDao.deleteAll();
+        bulkDeleter.deletePets(Specification.where(null));
+    }
+
+    public long deleteWithFilter(String breed, Color color) {
+        if ((breed == null || breed.isEmpty()) && color == null) {
+            throw new InvalidRequestParameterException("Deleting by filter needs a breed or a color, use /all to delete every pet");
+        }
+        return bulkDeleter.deletePets(PetSpecifications.filter(null, null, breed, color, null, null));
     }
 
     @Transactional
-    public PetDto update(Long id, PetDto entity) {
-        Pet pet = petDao.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Pet not found with id: " + id));
+    public PetDto update(Long id, PetDto entity, Long ownerScope) {
+        Pet pet = findForMutation(id, ownerScope);
         if (entity.getName() != null) pet.setName(entity.getName());
         if (entity.getColor() != null) pet.setColor(entity.getColor());
         if (entity.getBirthDate() != null) pet.setBirthDate(entity.getBirthDate());
         if (entity.getBreed() != null) pet.setBreed(entity.getBreed());
         if (entity.getOwner() != null) {
-            Owner owner = getOwner(entity.getId());
-            pet.setOwner(owner);
+            changeOwner(pet, entity.getOwner());
         }
         if (!entity.getFriendIds().isEmpty()) {
-            List<Pet> oldFriends = pet.getFriends();
-            for (Pet friend : oldFriends) {
-                friend.getFriends().remove(pet);
-                pet.getFriends().remove(friend);
-            }
-            pet.getFriends().clear();
-            List<Pet> newFriends = petDao.findAllById(entity.getFriendIds());
-            pet.getFriends().addAll(newFriends);
+            replaceFriends(pet, entity.getFriendIds());
         }
         return petMapper.toDto(petDao.save(pet));
     }
 
+    /**
+     * Applies a JSON Merge Patch and returns the new ETag. Only the columns present in the patch are
+     * written, and the friends collection is only loaded when the patch replaces it.
+     */
     @Transactional
+    public String patch(long id, PetPatchDto patch, Long ownerScope) {
+        Pet pet = findForMutation(id, ownerScope);
+        if (patch.getName() != null) {
+            pet.setName(patch.getName()
+                    .orElseThrow(() -> new InvalidRequestParameterException("Pet name cannot be removed")));
+        }
+        if (patch.getBirthDate() != null) pet.setBirthDate(patch.getBirthDate().orElse(null));
+        if (patch.getBreed() != null) pet.setBreed(patch.getBreed().orElse(null));
+        if (patch.getColor() != null) pet.setColor(patch.getColor().orElse(null));
+        if (patch.getOwner() != null) changeOwner(pet, patch.getOwner().orElse(null));
+        if (patch.getFriendIds() != null) replaceFriends(pet, patch.getFriendIds().orElse(List.of()));
+        // Changed columns and collections increment the version at flush, bumps already did.
+        entityManager.flush();
+        return EntityTags.of(pet.getVersion());
+    }
+
+    @Transactional(readOnly = true)
     public PetDto getById(long id) {
         Pet pet = petDao.findById(id).orElseThrow(() -> new EntityNotFoundException("Pet not found with id: " + id));
         return petMapper.toDto(pet);
     }
 
-    @Transactional
+    /** Only the requested fields of the pet, read without loading the entity. */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getById(long id, List<String> fields) {
+        return PET_FIELDS.find(entityManager, fields, PetSpecifications.hasId(id), Pageable.unpaged()).stream()
+                .findFirst()
+                .orElseThrow(() -> new EntityNotFoundException("Pet not found with id: " + id));
+    }
+
+    @Transactional(readOnly = true)
     public List<PetDto> getAll() {
         return petDao.findAll().stream().map(petMapper::toDto).toList();
     }
 
-    @Transactional
-    public Page<PetDto> getPetsWithFilter(int page, int size, String name, LocalDate birthdate, String breed, Color color, Long ownerId, List<Long> friendIds) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Pet> petPage;
-        if (friendIds != null && !friendIds.isEmpty()) {
-            petPage = petDao.findByFriendsIdIn(friendIds, pageable);
-        } else if (name != null && !name.isEmpty() && birthdate != null) {
-            petPage = petDao.findByNameAndBirthDate(name, birthdate, pageable);
-        } else if (name != null && !name.isEmpty()) {
-            petPage = petDao.findByName(name, pageable);
-        } else if (birthdate != null) {
-            petPage = petDao.findByBirthDate(birthdate, pageable);
-        } else if (breed != null) {
-            petPage = petDao.findByBreed(breed, pageable);
-        } else if (color != null) {
-            petPage = petDao.findByColor(color, pageable);
-        } else if (ownerId != null) {
-            petPage = petDao.findByOwnerId(ownerId, pageable);
-        } else {
-            petPage = petDao.findAll(pageable);
+    // Friend ids are read per chunk of pets, the friends collections are never initialized.
+    @Transactional(readOnly = true)
+    public void forEachPet(Consumer<PetDto> consumer) {
+        try (Stream<Pet> pets = petDao.streamAll()) {
+            ChunkedExport.forEachChunk(pets, entityManager, chunk -> {
+                Map<Long, List<Long>> friendIds = ChunkedExport.groupIds(
+                        petDao.findFriendIdsOf(chunk.stream().map(Pet::getId).toList()));
+                chunk.forEach(pet -> consumer.accept(
+                        petMapper.toDto(pet, friendIds.getOrDefault(pet.getId(), List.of()))));
+            });
         }
+    }
+
+    @Transactional(readOnly = true)
+    public String getPetETag(long id) {
+        return petDao.findVersionById(id).map(EntityTags::of).orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public String getPetsWithFilterETag(int page, int size, String name, LocalDate birthdate, String breed, Color color, Long ownerId, List<Long> friendIds) {
+        return entityTags.forPage(Pet.class,
+                PetSpecifications.filter(name, birthdate, breed, color, ownerId, friendIds), filterPage(page, size));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<PetDto> getPetsWithFilter(int page, int size, String name, LocalDate birthdate, String breed, Color color, Long ownerId, List<Long> friendIds) {
+        Pageable pageable = filterPage(page, size);
+        Page<Pet> petPage = petDao.findAll(
+                PetSpecifications.filter(name, birthdate, breed, color, ownerId, friendIds), pageable);
         List<PetDto> petDtos = petPage.getContent().stream().map(petMapper::toDto).toList();
         return new PageImpl<>(petDtos, pageable, petPage.getTotalElements());
     }
 
-    @Transactional
-    public boolean getIsPetOwner(Long petId, Long ownerId) {
-        return petDao.existsByIdAndOwnerId(petId, ownerId);
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getPetsWithFilter(int page, int size, String name, LocalDate birthdate, String breed,
+                                                       Color color, Long ownerId, List<Long> friendIds, List<String> fields) {
+        Pageable pageable = filterPage(page, size);
+        Specification<Pet> specification = PetSpecifications.filter(name, birthdate, breed, color, ownerId, friendIds);
+        return PageableExecutionUtils.getPage(PET_FIELDS.find(entityManager, fields, specification, pageable),
+                pageable, () -> petDao.count(specification));
     }
 
-    private List<Pet> getPets(List<Long> petIds) {
-        if (petIds == null) {
-            return new ArrayList<>();
+    @Transactional(readOnly = true)
+    public CursorPageDto<PetDto> getPetsAfter(String after, int size, KeysetSort sort, String name, LocalDate birthdate,
+                                              String breed, Color color, Long ownerId, List<Long> friendIds) {
+        return KeysetCursor.fetch(petDao,
+                PetSpecifications.filter(name, birthdate, breed, color, ownerId, friendIds),
+                after, size, sort, Pet::getId, Pet::getName, petMapper::toDto);
+    }
+
+    // Ownership is checked on the row the mutation works on, in its transaction, so there is no separate
+    // lookup and no window for the owner to change in between: the version check at flush covers that.
+    private Pet findForMutation(long id, Long ownerScope) {
+        Pet pet = petDao.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Pet not found with id: " + id));
+        return checkOwner(pet, ownerScope);
+    }
+
+    private static Pet checkOwner(Pet pet, Long ownerScope) {
+        if (ownerScope != null && (pet.getOwner() == null || !ownerScope.equals(pet.getOwner().getId()))) {
+            throw new AccessDeniedException("Pet " + pet.getId() + " belongs to another owner");
         }
-        List<Pet> pets = new ArrayList<>();
-        for (Long petId : petIds) {
-            Pet pet = petDao.findById(petId)
-                    .orElseThrow(() -> new EntityNotFoundException("Pet not found with id: " + petId));
-            pets.add(pet);
+        return pet;
+    }
+
+    // Ordered by id so a page, and its ETag, are stable between requests.
+    private static Pageable filterPage(int page, int size) {
+        return PageRequest.of(page, size, Sort.by("id"));
+    }
+
+    // A constant number of statements however many friends the pet has: neither Owner.pets nor any
+    // friends collection is initialized. Hibernate drops the pet's own pet_friends rows with one DELETE
+    // by pet_id, and auto_evict_collection_cache evicts the owner's cached Owner.pets.
+    private void delete(Pet pet) {
+        entityVersions.bump(pet.getOwner());
+        entityVersions.detachIncomingFriendships(pet.getId());
+        petDao.delete(pet);
+        friendGraphService.refreshAfterCommit(pet.getId());
+    }
+
+    private void changeOwner(Pet pet, Long ownerId) {
+        Owner owner = entityBatchResolver.resolveOwner(ownerId);
+        Long currentId = pet.getOwner() == null ? null : pet.getOwner().getId();
+        if (!Objects.equals(currentId, ownerId)) {
+            entityVersions.bump(pet.getOwner());
+            entityVersions.bump(owner);
         }
-        return pets.stream().toList();
+        pet.setOwner(owner);
+    }
+
+    // The old friends are detached first, so the new ones are loaded with their current versions.
+    private void replaceFriends(Pet pet, List<Long> friendIds) {
+        detachFriends(pet);
+        pet.getFriends().addAll(entityBatchResolver.resolvePets(friendIds));
+        friendGraphService.refreshAfterCommit(pet.getId());
     }
 
-    private Owner getOwner(Long id) {
-        if (id == null) {
-            return null;
+    // Friendship is removed in both directions, but the reverse edges are dropped by id instead of
+    // initializing every friend's collection.
+    private void detachFriends(Pet pet) {
+        List<Pet> friends = List.copyOf(pet.getFriends());
+        pet.getFriends().clear();
+        if (pet.getId() != null) {
+            entityVersions.detachReverseFriendships(pet.getId(), friends);
         }
-        return ownerDao.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Owner not found with id: " + id));
     }
 }
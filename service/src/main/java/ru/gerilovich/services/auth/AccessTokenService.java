@@ -0,0 +1,98 @@
+package ru.gerilovich.services.auth;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import ru.gerilovich.dto.AccessTokenDto;
+import ru.gerilovich.models.auth.CustomUserDetails;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and verifies stateless access tokens of the form {@code base64url(payload).base64url(hmac)}.
+ * The payload carries everything {@link CustomUserDetails} needs, so verification never touches the database.
+ */
+public class AccessTokenService {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String VERSION = "v1";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+
+    public AccessTokenService(byte[] secret, Duration ttl, Clock clock) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("Access token secret must be at least 256 bits");
+        }
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    public AccessTokenDto issue(CustomUserDetails user) {
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        String authorities = user.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+        String payload = String.join(":",
+                VERSION,
+                String.valueOf(user.getId()),
+                ENCODER.encodeToString(user.getUsername().getBytes(StandardCharsets.UTF_8)),
+                authorities,
+                String.valueOf(expiresAt));
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        String token = encodedPayload + "." + ENCODER.encodeToString(sign(encodedPayload));
+        return new AccessTokenDto(token, "Bearer", ttl.toSeconds());
+    }
+
+    public Optional<CustomUserDetails> verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator <= 0 || separator != token.lastIndexOf('.')) {
+            return Optional.empty();
+        }
+        String encodedPayload = token.substring(0, separator);
+        try {
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, sign(encodedPayload))) {
+                return Optional.empty();
+            }
+            String[] parts = new String(DECODER.decode(encodedPayload), StandardCharsets.UTF_8).split(":", -1);
+            if (parts.length != 5 || !VERSION.equals(parts[0])
+                    || Long.parseLong(parts[4]) <= clock.instant().getEpochSecond()) {
+                return Optional.empty();
+            }
+            List<SimpleGrantedAuthority> authorities = parts[3].isEmpty()
+                    ? List.of()
+                    : Arrays.stream(parts[3].split(",")).map(SimpleGrantedAuthority::new).toList();
+            return Optional.of(new CustomUserDetails(
+                    Long.parseLong(parts[1]),
+                    new String(DECODER.decode(parts[2]), StandardCharsets.UTF_8),
+                    "",
+                    authorities));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String encodedPayload) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC is not available", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.gerilovich.services.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.gerilovich.models.auth.CustomUserDetails;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps successful password verifications in memory so repeat callers skip both the owner lookup
+ * and the BCrypt check. Only an HMAC of the raw password under a per-process random key is stored.
+ */
+public class AuthenticationCache {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, Entry> cache;
+    private final SecretKeySpec key;
+    private final AtomicLong generation = new AtomicLong();
+
+    public AuthenticationCache(Duration ttl, long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+    }
+
+    public Optional<CustomUserDetails> get(String username, String rawPassword) {
+        Entry entry = cache.getIfPresent(username);
+        if (entry == null || !MessageDigest.isEqual(entry.digest(), digest(username, rawPassword))) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.details());
+    }
+
+    /**
+     * Returns a stamp to pass to {@link #put} so that a verification started before an invalidation
+     * is not cached afterwards with stale credentials.
+     */
+    public long stamp() {
+        return generation.get();
+    }
+
+    public void put(long stamp, String username, String rawPassword, CustomUserDetails details) {
+        if (stamp != generation.get()) {
+            return;
+        }
+        cache.put(username, new Entry(digest(username, rawPassword), details));
+    }
+
+    public void invalidate(Long ownerId) {
+        evictNowAndAfterCommit(() -> cache.asMap().values()
+                .removeIf(entry -> Objects.equals(entry.details().getId(), ownerId)));
+    }
+
+    public void invalidateAll() {
+        evictNowAndAfterCommit(cache::invalidateAll);
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "authentication");
+    }
+
+    // A login running concurrently with the writing transaction can still read the old row,
+    // so the eviction is repeated once the new credentials are visible.
+    private void evictNowAndAfterCommit(Runnable eviction) {
+        generation.incrementAndGet();
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    private byte[] digest(String username, String rawPassword) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC is not available", e);
+        }
+    }
+
+    private record Entry(byte[] digest, CustomUserDetails details) {
+    }
+}
@@ -0,0 +1,47 @@
+package ru.gerilovich.services.auth;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import ru.gerilovich.models.auth.CustomUserDetails;
+
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+    private final AuthenticationProvider delegate;
+    private final AuthenticationCache authenticationCache;
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+        String rawPassword = credentials.toString();
+
+        Optional<CustomUserDetails> cached = authenticationCache.get(username, rawPassword);
+        if (cached.isPresent()) {
+            CustomUserDetails details = cached.get();
+            UsernamePasswordAuthenticationToken result =
+                    UsernamePasswordAuthenticationToken.authenticated(details, null, details.getAuthorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+
+        long stamp = authenticationCache.stamp();
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.getPrincipal() instanceof CustomUserDetails details) {
+            authenticationCache.put(stamp, username, rawPassword, details);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.gerilovich.services.auth;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long hashing takes, separately for new hashes and for verifications, and for the
+ * latter whether the password matched.
+ */
+public class TimedPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final Timer encoding;
+    private final Timer matched;
+    private final Timer mismatched;
+
+    public TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.encoding = timer(registry, "encode", "none");
+        this.matched = timer(registry, "verify", "match");
+        this.mismatched = timer(registry, "verify", "mismatch");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encoding.record(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        (matches ? matched : mismatched).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static Timer timer(MeterRegistry registry, String operation, String result) {
+        return Timer.builder("auth.password.hashing")
+                .description("Time spent computing password hashes")
+                .tag("operation", operation)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
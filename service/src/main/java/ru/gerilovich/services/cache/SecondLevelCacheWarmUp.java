@@ -0,0 +1,60 @@
+package ru.gerilovich.services.cache;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.gerilovich.dao.OwnerDao;
+import ru.gerilovich.dao.PetDao;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Loads every pet and owner, with their collections, once at startup so the first reads after a
+ * deploy hit the second-level cache. Enabled with {@code app.cache.warm-up=true}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.cache.warm-up", havingValue = "true")
+@RequiredArgsConstructor
+public class SecondLevelCacheWarmUp implements ApplicationRunner {
+    private static final int CLEAR_INTERVAL = 500;
+
+    private final PetDao petDao;
+    private final OwnerDao ownerDao;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        long started = System.nanoTime();
+        Integer pets = transaction.execute(status -> warm(petDao.streamAll(), pet -> Hibernate.initialize(pet.getFriends())));
+        Integer owners = transaction.execute(status -> warm(ownerDao.streamAll(), owner -> Hibernate.initialize(owner.getPets())));
+        log.info("Warmed the second-level cache with {} pets and {} owners in {} ms",
+                pets, owners, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private <T> int warm(Stream<T> entities, Consumer<T> initializer) {
+        try (entities) {
+            Iterator<T> iterator = entities.iterator();
+            int loaded = 0;
+            while (iterator.hasNext()) {
+                initializer.accept(iterator.next());
+                if (++loaded % CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+            return loaded;
+        }
+    }
+}
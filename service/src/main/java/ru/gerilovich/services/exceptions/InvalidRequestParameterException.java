@@ -0,0 +1,7 @@
+package ru.gerilovich.services.exceptions;
+
+public class InvalidRequestParameterException extends RuntimeException {
+    public InvalidRequestParameterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.gerilovich.services.exceptions;
+
+public class StatementLimitExceededException extends RuntimeException {
+    public StatementLimitExceededException(String message) {
+        super(message);
+    }
+}
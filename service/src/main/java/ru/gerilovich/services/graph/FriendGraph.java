@@ -0,0 +1,637 @@
+package ru.gerilovich.services.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+/**
+ * Immutable friendship graph. Pets are addressed by their index in the ascending ids, the friends of
+ * pet {@code i} are the sorted indices in its row. Ids and rows are held in pages of {@code PAGE_SIZE}
+ * pets, so a change copies only the pages it touches and shares the rest with the graph it was made from.
+ * Friendship is undirected: a row in pet_friends in either direction links both pets.
+ */
+public final class FriendGraph {
+    public static final FriendGraph EMPTY = new FriendGraph(new long[0][], new int[0][][], 0, 0, 0);
+
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int[] NO_FRIENDS = new int[0];
+
+    private final long[][] idPages;
+    // A removed pet keeps its id and index with a null row until the graph is compacted.
+    private final int[][][] rowPages;
+    private final int vertexCount;
+    private final int removedCount;
+    private final long rowLengths;
+
+    private FriendGraph(long[][] idPages, int[][][] rowPages, int vertexCount, int removedCount, long rowLengths) {
+        this.idPages = idPages;
+        this.rowPages = rowPages;
+        this.vertexCount = vertexCount;
+        this.removedCount = removedCount;
+        this.rowLengths = rowLengths;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int petCount() {
+        return vertexCount - removedCount;
+    }
+
+    public int friendshipCount() {
+        return (int) (rowLengths / 2);
+    }
+
+    public boolean contains(long petId) {
+        return vertexOf(petId) >= 0;
+    }
+
+    /**
+     * Returns the pets at distance 1..hops from the given one, grouped by distance. Layers past the
+     * edge of the pet's component are omitted.
+     */
+    public long[][] neighbourhood(long petId, int hops) {
+        int start = vertexOf(petId);
+        if (start < 0) {
+            return new long[0][];
+        }
+        IntIntMap visited = new IntIntMap();
+        visited.put(start, -1);
+        IntBuffer frontier = new IntBuffer();
+        frontier.add(start);
+        long[][] layers = new long[hops][];
+        int depth = 0;
+        while (depth < hops && frontier.size > 0) {
+            IntBuffer next = new IntBuffer();
+            for (int f = 0; f < frontier.size; f++) {
+                int vertex = frontier.values[f];
+                for (int friend : row(vertex)) {
+                    if (visited.putIfAbsent(friend, vertex)) {
+                        next.add(friend);
+                    }
+                }
+            }
+            if (next.size == 0) {
+                break;
+            }
+            layers[depth++] = toIds(next);
+            frontier = next;
+        }
+        return Arrays.copyOf(layers, depth);
+    }
+
+    /**
+     * Returns the shortest chain of friendships from one pet to another, both included, or an empty
+     * array when they are not connected. Searches from both ends and always grows the smaller frontier.
+     */
+    public long[] shortestPath(long fromPetId, long toPetId) {
+        int source = vertexOf(fromPetId);
+        int target = vertexOf(toPetId);
+        if (source < 0 || target < 0) {
+            return new long[0];
+        }
+        if (source == target) {
+            return new long[]{fromPetId};
+        }
+        IntIntMap forwardParents = new IntIntMap();
+        IntIntMap backwardParents = new IntIntMap();
+        forwardParents.put(source, -1);
+        backwardParents.put(target, -1);
+        IntBuffer forward = new IntBuffer();
+        IntBuffer backward = new IntBuffer();
+        forward.add(source);
+        backward.add(target);
+
+        while (forward.size > 0 && backward.size > 0) {
+            boolean fromSource = forward.size <= backward.size;
+            IntBuffer frontier = fromSource ? forward : backward;
+            IntIntMap parents = fromSource ? forwardParents : backwardParents;
+            IntIntMap otherParents = fromSource ? backwardParents : forwardParents;
+            IntBuffer next = new IntBuffer();
+            for (int f = 0; f < frontier.size; f++) {
+                int vertex = frontier.values[f];
+                for (int friend : row(vertex)) {
+                    if (!parents.putIfAbsent(friend, vertex)) {
+                        continue;
+                    }
+                    if (otherParents.containsKey(friend)) {
+                        return joinPath(friend, forwardParents, backwardParents);
+                    }
+                    next.add(friend);
+                }
+            }
+            if (fromSource) {
+                forward = next;
+            } else {
+                backward = next;
+            }
+        }
+        return new long[0];
+    }
+
+    /**
+     * Counts, for every pet two friendships away, how many friends it shares with the given pet.
+     * The pet itself and its direct friends are not candidates.
+     */
+    public MutualFriends mutualFriends(long petId) {
+        int pet = vertexOf(petId);
+        if (pet < 0) {
+            return new MutualFriends(new long[0], new int[0]);
+        }
+        int[] friends = row(pet);
+        IntIntMap counts = new IntIntMap();
+        for (int friend : friends) {
+            for (int candidate : row(friend)) {
+                if (candidate != pet && Arrays.binarySearch(friends, candidate) < 0) {
+                    counts.increment(candidate);
+                }
+            }
+        }
+        long[] candidates = new long[counts.size];
+        int[] mutual = new int[counts.size];
+        int i = 0;
+        for (int slot = 0; slot < counts.keys.length; slot++) {
+            if (counts.keys[slot] != IntIntMap.FREE) {
+                candidates[i] = idAt(counts.keys[slot]);
+                mutual[i++] = counts.values[slot];
+            }
+        }
+        return new MutualFriends(candidates, mutual);
+    }
+
+    /**
+     * Starts a change that drops the given pets and all their friendships, so their current rows can be
+     * added back after a write. Only the rows of those pets and of their old and new friends are rebuilt.
+     */
+    public Changes without(long[] petIds) {
+        return new Changes(this, petIds);
+    }
+
+    private long[] joinPath(int meeting, IntIntMap forwardParents, IntIntMap backwardParents) {
+        IntBuffer head = new IntBuffer();
+        for (int vertex = meeting; vertex != -1; vertex = forwardParents.get(vertex)) {
+            head.add(vertex);
+        }
+        IntBuffer path = new IntBuffer();
+        for (int i = head.size - 1; i >= 0; i--) {
+            path.add(head.values[i]);
+        }
+        for (int vertex = backwardParents.get(meeting); vertex != -1; vertex = backwardParents.get(vertex)) {
+            path.add(vertex);
+        }
+        return toIds(path);
+    }
+
+    private long[] toIds(IntBuffer vertices) {
+        long[] result = new long[vertices.size];
+        for (int i = 0; i < vertices.size; i++) {
+            result[i] = idAt(vertices.values[i]);
+        }
+        return result;
+    }
+
+    private long idAt(int vertex) {
+        return idPages[vertex >>> PAGE_BITS][vertex & PAGE_MASK];
+    }
+
+    private int[] row(int vertex) {
+        return rowPages[vertex >>> PAGE_BITS][vertex & PAGE_MASK];
+    }
+
+    // The index of a live pet, or -1.
+    private int vertexOf(long petId) {
+        int vertex = indexOf(petId);
+        return vertex >= 0 && row(vertex) != null ? vertex : -1;
+    }
+
+    // Binary search over the paged ids, removed pets included.
+    private int indexOf(long petId) {
+        int low = 0;
+        int high = vertexCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long id = idAt(mid);
+            if (id < petId) {
+                low = mid + 1;
+            } else if (id > petId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private boolean needsCompaction() {
+        return removedCount > vertexCount / 4;
+    }
+
+    // Rebuilds the graph without the ids of removed pets.
+    private FriendGraph compact() {
+        Builder builder = new Builder();
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            int[] friends = row(vertex);
+            if (friends == null) {
+                continue;
+            }
+            long petId = idAt(vertex);
+            builder.addPet(petId);
+            for (int friend : friends) {
+                if (friend > vertex) {
+                    builder.addFriendship(petId, idAt(friend));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static FriendGraph paged(long[] ids, int[] offsets, int[] neighbours) {
+        int pages = (ids.length + PAGE_MASK) >>> PAGE_BITS;
+        long[][] idPages = new long[pages][];
+        int[][][] rowPages = new int[pages][][];
+        for (int page = 0; page < pages; page++) {
+            idPages[page] = new long[PAGE_SIZE];
+            rowPages[page] = new int[PAGE_SIZE][];
+        }
+        for (int vertex = 0; vertex < ids.length; vertex++) {
+            idPages[vertex >>> PAGE_BITS][vertex & PAGE_MASK] = ids[vertex];
+            rowPages[vertex >>> PAGE_BITS][vertex & PAGE_MASK] = offsets[vertex] == offsets[vertex + 1]
+                    ? NO_FRIENDS : Arrays.copyOfRange(neighbours, offsets[vertex], offsets[vertex + 1]);
+        }
+        return new FriendGraph(idPages, rowPages, ids.length, 0, neighbours.length);
+    }
+
+    private static int[] sortedDistinct(IntBuffer values) {
+        if (values.size == 0) {
+            return NO_FRIENDS;
+        }
+        int[] sorted = Arrays.copyOf(values.values, values.size);
+        Arrays.sort(sorted);
+        int write = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[write - 1]) {
+                sorted[write++] = sorted[i];
+            }
+        }
+        return write == sorted.length ? sorted : Arrays.copyOf(sorted, write);
+    }
+
+    /** Candidate pet ids and their mutual-friend counts, index by index, in no particular order. */
+    public record MutualFriends(long[] petIds, int[] counts) {
+    }
+
+    public static final class Builder {
+        private long[] pets = new long[16];
+        private int petCount;
+        private long[] edges = new long[32];
+        private int edgeCount;
+
+        private Builder() {
+        }
+
+        public Builder addPet(long petId) {
+            if (petCount == pets.length) {
+                pets = Arrays.copyOf(pets, petCount * 2);
+            }
+            pets[petCount++] = petId;
+            return this;
+        }
+
+        /** Friendships with a pet that was never added are dropped by {@link #build()}. */
+        public Builder addFriendship(long petId, long friendId) {
+            if (edgeCount * 2 == edges.length) {
+                edges = Arrays.copyOf(edges, edges.length * 2);
+            }
+            edges[edgeCount * 2] = petId;
+            edges[edgeCount * 2 + 1] = friendId;
+            edgeCount++;
+            return this;
+        }
+
+        public FriendGraph build() {
+            long[] ids = Arrays.stream(pets, 0, petCount).sorted().distinct().toArray();
+            int[] from = new int[edgeCount];
+            int[] to = new int[edgeCount];
+            int[] degree = new int[ids.length + 1];
+            int kept = 0;
+            for (int e = 0; e < edgeCount; e++) {
+                int a = Arrays.binarySearch(ids, edges[e * 2]);
+                int b = Arrays.binarySearch(ids, edges[e * 2 + 1]);
+                if (a < 0 || b < 0 || a == b) {
+                    continue;
+                }
+                from[kept] = a;
+                to[kept] = b;
+                degree[a]++;
+                degree[b]++;
+                kept++;
+            }
+
+            int[] offsets = new int[ids.length + 1];
+            for (int v = 0; v < ids.length; v++) {
+                offsets[v + 1] = offsets[v] + degree[v];
+            }
+            int[] neighbours = new int[offsets[ids.length]];
+            int[] cursor = Arrays.copyOf(offsets, ids.length);
+            for (int e = 0; e < kept; e++) {
+                neighbours[cursor[from[e]]++] = to[e];
+                neighbours[cursor[to[e]]++] = from[e];
+            }
+
+            // The same friendship can be stored in both directions, keep each neighbour once.
+            int[] compactOffsets = new int[ids.length + 1];
+            int write = 0;
+            for (int v = 0; v < ids.length; v++) {
+                Arrays.sort(neighbours, offsets[v], offsets[v + 1]);
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    if (e == offsets[v] || neighbours[e] != neighbours[e - 1]) {
+                        neighbours[write++] = neighbours[e];
+                    }
+                }
+                compactOffsets[v + 1] = write;
+            }
+            return paged(ids, compactOffsets, Arrays.copyOf(neighbours, write));
+        }
+    }
+
+    /**
+     * Pets and friendships to put back for the pets a change dropped, see {@link #without(long[])}. New
+     * pets are placed after the last page when their ids are above every id in the graph, as ids from a
+     * sequence are. A new id below them rebuilds the whole graph instead.
+     */
+    public static final class Changes {
+        private final FriendGraph graph;
+        private final long[] dropped;
+        private final Builder added = new Builder();
+
+        private Changes(FriendGraph graph, long[] petIds) {
+            this.graph = graph;
+            this.dropped = petIds.clone();
+        }
+
+        public Changes addPet(long petId) {
+            added.addPet(petId);
+            return this;
+        }
+
+        /** Friendships with a pet that is neither kept nor added are dropped by {@link #build()}. */
+        public Changes addFriendship(long petId, long friendId) {
+            added.addFriendship(petId, friendId);
+            return this;
+        }
+
+        public FriendGraph build() {
+            long[] present = Arrays.stream(added.pets, 0, added.petCount).sorted().distinct().toArray();
+            long[] touched = LongStream.concat(Arrays.stream(dropped), Arrays.stream(present)).sorted().distinct().toArray();
+            long[] appended = Arrays.stream(present).filter(petId -> graph.indexOf(petId) < 0).toArray();
+            int oldCount = graph.vertexCount;
+            if (appended.length > 0 && oldCount > 0 && appended[0] < graph.idAt(oldCount - 1)) {
+                return rebuild(present, touched);
+            }
+
+            int count = oldCount + appended.length;
+            int pages = (count + PAGE_MASK) >>> PAGE_BITS;
+            Draft draft = new Draft(graph, pages);
+            for (int i = 0; i < appended.length; i++) {
+                draft.append(oldCount + i, appended[i]);
+            }
+
+            Map<Integer, IntBuffer> addedRows = new HashMap<>();
+            for (int e = 0; e < added.edgeCount; e++) {
+                int a = target(added.edges[e * 2], present, touched, appended);
+                int b = target(added.edges[e * 2 + 1], present, touched, appended);
+                if (a < 0 || b < 0 || a == b) {
+                    continue;
+                }
+                addedRows.computeIfAbsent(a, vertex -> new IntBuffer()).add(b);
+                addedRows.computeIfAbsent(b, vertex -> new IntBuffer()).add(a);
+            }
+
+            IntBuffer touchedBuffer = new IntBuffer();
+            for (long petId : touched) {
+                int vertex = indexAfter(petId, appended);
+                if (vertex >= 0) {
+                    touchedBuffer.add(vertex);
+                }
+            }
+            int[] touchedVertices = sortedDistinct(touchedBuffer);
+
+            IntBuffer neighbours = new IntBuffer();
+            for (long petId : touched) {
+                int vertex = indexAfter(petId, appended);
+                if (vertex < 0) {
+                    continue;
+                }
+                int[] friends = vertex < oldCount ? graph.row(vertex) : null;
+                if (friends != null) {
+                    for (int friend : friends) {
+                        if (Arrays.binarySearch(touchedVertices, friend) < 0) {
+                            neighbours.add(friend);
+                        }
+                    }
+                }
+                IntBuffer friendsNow = addedRows.get(vertex);
+                draft.put(vertex, Arrays.binarySearch(present, petId) < 0 ? null
+                        : friendsNow == null ? NO_FRIENDS : sortedDistinct(friendsNow));
+            }
+            for (int vertex : addedRows.keySet()) {
+                if (Arrays.binarySearch(touchedVertices, vertex) < 0) {
+                    neighbours.add(vertex);
+                }
+            }
+            for (int vertex : sortedDistinct(neighbours)) {
+                IntBuffer friends = new IntBuffer();
+                for (int friend : graph.row(vertex)) {
+                    if (Arrays.binarySearch(touchedVertices, friend) < 0) {
+                        friends.add(friend);
+                    }
+                }
+                IntBuffer friendsNow = addedRows.get(vertex);
+                for (int f = 0; friendsNow != null && f < friendsNow.size; f++) {
+                    friends.add(friendsNow.values[f]);
+                }
+                draft.put(vertex, sortedDistinct(friends));
+            }
+
+            FriendGraph changed = draft.build(count);
+            return changed.needsCompaction() ? changed.compact() : changed;
+        }
+
+        // The index a pet has after the change if it is live then, or -1.
+        private int target(long petId, long[] present, long[] touched, long[] appended) {
+            if (Arrays.binarySearch(touched, petId) < 0) {
+                return graph.vertexOf(petId);
+            }
+            return Arrays.binarySearch(present, petId) >= 0 ? indexAfter(petId, appended) : -1;
+        }
+
+        private int indexAfter(long petId, long[] appended) {
+            int vertex = graph.indexOf(petId);
+            if (vertex >= 0) {
+                return vertex;
+            }
+            int position = Arrays.binarySearch(appended, petId);
+            return position >= 0 ? graph.vertexCount + position : -1;
+        }
+
+        private FriendGraph rebuild(long[] present, long[] touched) {
+            Builder builder = new Builder();
+            for (int vertex = 0; vertex < graph.vertexCount; vertex++) {
+                int[] friends = graph.row(vertex);
+                long petId = graph.idAt(vertex);
+                if (friends == null || Arrays.binarySearch(touched, petId) >= 0) {
+                    continue;
+                }
+                builder.addPet(petId);
+                for (int friend : friends) {
+                    long friendId = graph.idAt(friend);
+                    if (friendId > petId && Arrays.binarySearch(touched, friendId) < 0) {
+                        builder.addFriendship(petId, friendId);
+                    }
+                }
+            }
+            for (long petId : present) {
+                builder.addPet(petId);
+            }
+            for (int e = 0; e < added.edgeCount; e++) {
+                builder.addFriendship(added.edges[e * 2], added.edges[e * 2 + 1]);
+            }
+            return builder.build();
+        }
+    }
+
+    // Copy-on-write pages of a graph being changed: a page is copied the first time it is written.
+    private static final class Draft {
+        private final long[][] idPages;
+        private final int[][][] rowPages;
+        private final boolean[] copied;
+        private int removedCount;
+        private long rowLengths;
+
+        Draft(FriendGraph graph, int pages) {
+            idPages = Arrays.copyOf(graph.idPages, pages);
+            rowPages = Arrays.copyOf(graph.rowPages, pages);
+            copied = new boolean[pages];
+            removedCount = graph.removedCount;
+            rowLengths = graph.rowLengths;
+        }
+
+        void append(int vertex, long petId) {
+            writablePage(vertex >>> PAGE_BITS);
+            idPages[vertex >>> PAGE_BITS][vertex & PAGE_MASK] = petId;
+            // Counted as removed until its row is put.
+            removedCount++;
+        }
+
+        void put(int vertex, int[] friends) {
+            int[][] rows = writablePage(vertex >>> PAGE_BITS);
+            int[] previous = rows[vertex & PAGE_MASK];
+            rows[vertex & PAGE_MASK] = friends;
+            rowLengths += (friends == null ? 0 : friends.length) - (previous == null ? 0 : previous.length);
+            if (previous == null && friends != null) {
+                removedCount--;
+            } else if (previous != null && friends == null) {
+                removedCount++;
+            }
+        }
+
+        FriendGraph build(int vertexCount) {
+            return new FriendGraph(idPages, rowPages, vertexCount, removedCount, rowLengths);
+        }
+
+        private int[][] writablePage(int page) {
+            if (!copied[page]) {
+                idPages[page] = idPages[page] == null ? new long[PAGE_SIZE] : idPages[page].clone();
+                rowPages[page] = rowPages[page] == null ? new int[PAGE_SIZE][] : rowPages[page].clone();
+                copied[page] = true;
+            }
+            return rowPages[page];
+        }
+    }
+
+    private static final class IntBuffer {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    // Open addressing over non-negative keys, sized by the vertices a query reaches rather than the graph.
+    private static final class IntIntMap {
+        private static final int FREE = -1;
+
+        private int[] keys = newKeys(16);
+        private int[] values = new int[16];
+        private int size;
+
+        boolean containsKey(int key) {
+            return keys[slot(keys, key)] == key;
+        }
+
+        int get(int key) {
+            return values[slot(keys, key)];
+        }
+
+        void put(int key, int value) {
+            putIfAbsent(key, value);
+        }
+
+        void increment(int key) {
+            if (!putIfAbsent(key, 1)) {
+                values[slot(keys, key)]++;
+            }
+        }
+
+        boolean putIfAbsent(int key, int value) {
+            int slot = slot(keys, key);
+            if (keys[slot] == key) {
+                return false;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return true;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != FREE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, FREE);
+            return keys;
+        }
+    }
+}
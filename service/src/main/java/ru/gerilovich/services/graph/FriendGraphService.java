@@ -0,0 +1,245 @@
+package ru.gerilovich.services.graph;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.gerilovich.dto.FriendNeighbourhoodDto;
+import ru.gerilovich.dto.FriendPathDto;
+import ru.gerilovich.dto.PetRecommendationDto;
+import ru.gerilovich.services.EntityBatchResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Answers multi-hop friendship queries from an in-memory {@link FriendGraph}. The graph is loaded
+ * from pet_friends at startup. Writers report the pets they touched, and after commit those pets'
+ * rows are re-read and a new snapshot is published, sharing everything else with the previous one.
+ * Writers committing at the same time share one rebuild. Readers never lock.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FriendGraphService implements SmartInitializingSingleton {
+    private static final int TRAITS_CHUNK_SIZE = 1000;
+    private static final int SHORTLIST_FACTOR = 5;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Set<Long> pendingPetIds = ConcurrentHashMap.newKeySet();
+    private volatile FriendGraph graph = FriendGraph.EMPTY;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    public FriendNeighbourhoodDto getNeighbourhood(long petId, int hops) {
+        FriendGraph snapshot = requirePets(petId);
+        List<List<Long>> layers = Arrays.stream(snapshot.neighbourhood(petId, hops))
+                .map(layer -> Arrays.stream(layer).boxed().toList())
+                .toList();
+        return new FriendNeighbourhoodDto(petId, layers);
+    }
+
+    public FriendPathDto getShortestPath(long fromPetId, long toPetId) {
+        FriendGraph snapshot = requirePets(fromPetId, toPetId);
+        List<Long> path = Arrays.stream(snapshot.shortestPath(fromPetId, toPetId)).boxed().toList();
+        return new FriendPathDto(fromPetId, toPetId, path, path.size() - 1);
+    }
+
+    public void refreshAfterCommit(Long petId) {
+        if (petId != null) {
+            refreshAfterCommit(List.of(petId));
+        }
+    }
+
+    /**
+     * Ranks pets that are not yet friends by mutual friends, optionally boosted for sharing the pet's
+     * breed or color. Breed and color are read only for candidates that can still reach the top
+     * {@code limit} after the boost, and for at most {@code SHORTLIST_FACTOR * limit} of them, highest
+     * counts first and ties by pet id. So the database work is bounded by the limit, not by the pet's
+     * degree, at the price that among many candidates tied on the same count one past the cap is not
+     * considered even if the boost would have lifted it.
+     */
+    public List<PetRecommendationDto> getRecommendations(long petId, int limit, double breedBoost, double colorBoost) {
+        FriendGraph.MutualFriends mutual = requirePets(petId).mutualFriends(petId);
+        long[] candidates = mutual.petIds();
+        int[] counts = mutual.counts();
+        if (candidates.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        List<Integer> byCount = IntStream.range(0, candidates.length).boxed()
+                .sorted(Comparator.<Integer>comparingInt(i -> counts[i]).reversed()
+                        .thenComparingLong(i -> candidates[i]))
+                .toList();
+        int threshold = counts[byCount.get(Math.min(limit, byCount.size()) - 1)];
+        double maxBoost = breedBoost + colorBoost;
+        int cap = maxBoost > 0 ? limit * SHORTLIST_FACTOR : limit;
+
+        List<Integer> shortlist = new ArrayList<>();
+        for (int i : byCount) {
+            if (shortlist.size() == cap || counts[i] + maxBoost < threshold) {
+                break;
+            }
+            shortlist.add(i);
+        }
+        Map<Long, PetTraits> traits = new HashMap<>();
+        if (maxBoost > 0) {
+            List<Long> ids = new ArrayList<>(shortlist.size() + 1);
+            ids.add(petId);
+            shortlist.forEach(i -> ids.add(candidates[i]));
+            traits = loadTraits(ids);
+        }
+        PetTraits own = traits.getOrDefault(petId, PetTraits.UNKNOWN);
+
+        List<PetRecommendationDto> recommendations = new ArrayList<>(shortlist.size());
+        for (int i : shortlist) {
+            PetTraits candidate = traits.getOrDefault(candidates[i], PetTraits.UNKNOWN);
+            double score = counts[i]
+                    + (own.breed() != null && own.breed().equals(candidate.breed()) ? breedBoost : 0)
+                    + (own.color() != null && own.color().equals(candidate.color()) ? colorBoost : 0);
+            recommendations.add(new PetRecommendationDto(candidates[i], counts[i], score));
+        }
+        recommendations.sort(Comparator.comparingDouble(PetRecommendationDto::getScore).reversed()
+                .thenComparing(Comparator.comparingInt(PetRecommendationDto::getMutualFriends).reversed())
+                .thenComparing(PetRecommendationDto::getPetId));
+        return recommendations.subList(0, Math.min(limit, recommendations.size()));
+    }
+
+    /** Re-reads the given pets and their friendships once the current transaction commits. */
+    public void refreshAfterCommit(Collection<Long> petIds) {
+        if (petIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(petIds);
+        afterCommit(() -> refresh(ids));
+    }
+
+    public void reloadAfterCommit() {
+        afterCommit(this::reload);
+    }
+
+    private void reload() {
+        writeLock.lock();
+        try {
+            // Everything queued so far committed before this read, so the reload covers it.
+            pendingPetIds.clear();
+            long started = System.nanoTime();
+            FriendGraph.Builder builder = FriendGraph.builder();
+            jdbcTemplate.getJdbcTemplate().query("SELECT id FROM pets",
+                    rs -> {
+                        builder.addPet(rs.getLong(1));
+                    });
+            jdbcTemplate.getJdbcTemplate().query("SELECT pet_id, friend_id FROM pet_friends",
+                    rs -> {
+                        builder.addFriendship(rs.getLong(1), rs.getLong(2));
+                    });
+            graph = builder.build();
+            log.info("Loaded friend graph with {} pets and {} friendships in {} ms",
+                    graph.petCount(), graph.friendshipCount(), (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Each writer queues its pets and waits for the lock. Whoever gets it first applies everything
+    // queued so far, so writers that committed while a rebuild was running are served by one rebuild.
+    // A pet is only taken off the queue before its rows are read, so no committed change is missed.
+    private void refresh(Collection<Long> ids) {
+        pendingPetIds.addAll(ids);
+        writeLock.lock();
+        try {
+            long[] petIds = takePending();
+            if (petIds.length == 0) {
+                return;
+            }
+            FriendGraph.Changes changes = graph.without(petIds);
+            List<Long> pending = Arrays.stream(petIds).boxed().toList();
+            for (int from = 0; from < pending.size(); from += EntityBatchResolver.IN_CHUNK_SIZE) {
+                List<Long> chunk = pending.subList(from, Math.min(from + EntityBatchResolver.IN_CHUNK_SIZE, pending.size()));
+                Map<String, Object> params = Map.of("ids", chunk);
+                jdbcTemplate.query("SELECT id FROM pets WHERE id IN (:ids)", params,
+                        rs -> {
+                            changes.addPet(rs.getLong(1));
+                        });
+                jdbcTemplate.query("SELECT pet_id, friend_id FROM pet_friends WHERE pet_id IN (:ids) "
+                                + "UNION ALL SELECT pet_id, friend_id FROM pet_friends WHERE friend_id IN (:ids)", params,
+                        rs -> {
+                            changes.addFriendship(rs.getLong(1), rs.getLong(2));
+                        });
+            }
+            graph = changes.build();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private long[] takePending() {
+        List<Long> petIds = new ArrayList<>();
+        for (Iterator<Long> iterator = pendingPetIds.iterator(); iterator.hasNext(); ) {
+            petIds.add(iterator.next());
+            iterator.remove();
+        }
+        return petIds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private Map<Long, PetTraits> loadTraits(List<Long> petIds) {
+        Map<Long, PetTraits> traits = new HashMap<>();
+        for (int from = 0; from < petIds.size(); from += TRAITS_CHUNK_SIZE) {
+            List<Long> chunk = petIds.subList(from, Math.min(from + TRAITS_CHUNK_SIZE, petIds.size()));
+            jdbcTemplate.query("SELECT id, breed, color FROM pets WHERE id IN (:ids)", Map.of("ids", chunk),
+                    rs -> {
+                        traits.put(rs.getLong(1), new PetTraits(rs.getString(2), rs.getString(3)));
+                    });
+        }
+        return traits;
+    }
+
+    private FriendGraph requirePets(long... petIds) {
+        FriendGraph snapshot = graph;
+        for (long petId : petIds) {
+            if (!snapshot.contains(petId)) {
+                throw new EntityNotFoundException("Pet not found with id: " + petId);
+            }
+        }
+        return snapshot;
+    }
+
+    private void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    update.run();
+                } catch (RuntimeException e) {
+                    // The write itself has committed, so the caller must not see a failure here.
+                    log.error("Failed to update the friend graph after commit", e);
+                }
+            }
+        });
+    }
+
+    private record PetTraits(String breed, String color) {
+        static final PetTraits UNKNOWN = new PetTraits(null, null);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.gerilovich.services.pagination;
+
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import ru.gerilovich.dao.specifications.KeysetSpecifications;
+import ru.gerilovich.dto.CursorPageDto;
+import ru.gerilovich.services.exceptions.InvalidRequestParameterException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Opaque position of the last returned row, encoded as {@code base64url(sort:id:value)}, or as
+ * {@code base64url(sort:id)} when the row has no value: null sorts after every value.
+ */
+public record KeysetCursor(KeysetSort sort, long id, String value) {
+
+    public static KeysetCursor decode(String token, KeysetSort expectedSort) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(":", 3);
+            KeysetCursor cursor = new KeysetCursor(KeysetSort.valueOf(parts[0]), Long.parseLong(parts[1]),
+                    parts.length == 3 ? parts[2] : null);
+            if (cursor.sort() != expectedSort) {
+                throw new InvalidRequestParameterException("Cursor was issued for sort " + cursor.sort());
+            }
+            return cursor;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidRequestParameterException("Malformed cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        String raw = sort.name() + ":" + id + (value == null ? "" : ":" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public <T> Specification<T> toSpecification() {
+        return KeysetSpecifications.after(sort.getAttribute(), value, id);
+    }
+
+    /**
+     * Reads one page past {@code after} without a count query: one extra row is fetched
+     * to find out whether another page exists.
+     */
+    public static <T, D> CursorPageDto<D> fetch(JpaSpecificationExecutor<T> dao, Specification<T> filter,
+                                                String after, int size, KeysetSort sort,
+                                                Function<T, Long> idOf, Function<T, String> valueOf,
+                                                Function<T, D> toDto) {
+        Specification<T> specification = filter.and(KeysetSpecifications.orderedBy(sort.getAttribute()));
+        if (after != null && !after.isEmpty()) {
+            specification = specification.and(decode(after, sort).toSpecification());
+        }
+        List<T> rows = dao.findBy(specification, query -> query.limit(size + 1).all());
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            T last = rows.getLast();
+            nextCursor = new KeysetCursor(sort, idOf.apply(last), sort == KeysetSort.ID ? null : valueOf.apply(last))
+                    .encode();
+        }
+        return new CursorPageDto<>(rows.stream().map(toDto).toList(), nextCursor);
+    }
+}
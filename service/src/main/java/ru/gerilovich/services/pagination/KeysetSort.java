@@ -0,0 +1,16 @@
+package ru.gerilovich.services.pagination;
+
+public enum KeysetSort {
+    ID("id"),
+    NAME("name");
+
+    private final String attribute;
+
+    KeysetSort(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+}
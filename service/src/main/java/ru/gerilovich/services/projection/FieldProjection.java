@@ -0,0 +1,138 @@
+package ru.gerilovich.services.projection;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import ru.gerilovich.services.exceptions.InvalidRequestParameterException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Fields of an entity a client can pick with {@code ?fields=}. The query selects only the columns
+ * of the requested fields instead of loading entities; a collection of ids is read with one extra
+ * query for all rows, and only when it is requested.
+ */
+public final class FieldProjection<T> {
+    private static final String ID = "id";
+
+    private final Class<T> entityClass;
+    private final Map<String, Function<Root<T>, Expression<?>>> columns = new LinkedHashMap<>();
+    private final Map<String, String> idCollections = new LinkedHashMap<>();
+
+    private FieldProjection(Class<T> entityClass) {
+        this.entityClass = entityClass;
+        columns.put(ID, root -> root.get(ID));
+    }
+
+    public static <T> FieldProjection<T> of(Class<T> entityClass) {
+        return new FieldProjection<>(entityClass);
+    }
+
+    public FieldProjection<T> column(String field) {
+        return column(field, root -> root.get(field));
+    }
+
+    public FieldProjection<T> column(String field, Function<Root<T>, Expression<?>> selector) {
+        columns.put(field, selector);
+        return this;
+    }
+
+    /** The field lists the ids of the given collection attribute. */
+    public FieldProjection<T> idCollection(String field, String attribute) {
+        idCollections.put(field, attribute);
+        return this;
+    }
+
+    /**
+     * Returns one map per matching row, holding the requested fields in the requested order. Rows
+     * are filtered by the specification and paged and sorted by the pageable.
+     */
+    public List<Map<String, Object>> find(EntityManager entityManager, List<String> fields,
+                                          Specification<T> specification, Pageable pageable) {
+        List<String> requested = validate(fields);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(entityClass);
+
+        // The id is always selected, the id collections are matched to the rows by it.
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(columns.get(ID).apply(root).alias(ID));
+        for (String field : requested) {
+            if (columns.containsKey(field) && !ID.equals(field)) {
+                selections.add(columns.get(field).apply(root).alias(field));
+            }
+        }
+        query.multiselect(selections);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+
+        Map<Object, Map<String, Object>> rows = new LinkedHashMap<>();
+        for (Tuple tuple : typedQuery.getResultList()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String field : requested) {
+                row.put(field, idCollections.containsKey(field) ? new ArrayList<>() : tuple.get(field));
+            }
+            rows.put(tuple.get(ID), row);
+        }
+        for (String field : requested) {
+            if (idCollections.containsKey(field) && !rows.isEmpty()) {
+                fillIds(entityManager, field, rows);
+            }
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private void fillIds(EntityManager entityManager, String field, Map<Object, Map<String, Object>> rows) {
+        String entityName = entityManager.getMetamodel().entity(entityClass).getName();
+        List<Object[]> pairs = entityManager.createQuery(
+                        "select e.id, c.id from " + entityName + " e join e." + idCollections.get(field)
+                                + " c where e.id in :ids order by c.id", Object[].class)
+                .setParameter("ids", rows.keySet())
+                .getResultList();
+        for (Object[] pair : pairs) {
+            @SuppressWarnings("unchecked")
+            List<Object> ids = (List<Object>) rows.get(pair[0]).get(field);
+            ids.add(pair[1]);
+        }
+    }
+
+    private List<String> validate(List<String> fields) {
+        LinkedHashSet<String> requested = new LinkedHashSet<>();
+        for (String field : fields) {
+            String name = field.trim();
+            if (!columns.containsKey(name) && !idCollections.containsKey(name)) {
+                List<String> known = new ArrayList<>(columns.keySet());
+                known.addAll(idCollections.keySet());
+                throw new InvalidRequestParameterException("Unknown field '" + name + "', expected any of "
+                        + String.join(",", known));
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty()) {
+            throw new InvalidRequestParameterException("At least one field must be requested");
+        }
+        return List.copyOf(requested);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.gerilovich.services.sql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread while a {@link StatementCount}
+ * is open. Counts may be nested, a statement is added to every open one. JDBC batches are prepared
+ * once, so a batch of inserts counts as a single statement.
+ */
+public class SqlStatementCounter implements StatementInspector {
+    private final ThreadLocal<StatementCount> current = new ThreadLocal<>();
+
+    public StatementCount open() {
+        StatementCount count = new StatementCount(current.get(), this::restore);
+        current.set(count);
+        return count;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        for (StatementCount count = current.get(); count != null; count = count.parent()) {
+            count.record(sql);
+        }
+        return sql;
+    }
+
+    private void restore(StatementCount parent) {
+        if (parent == null) {
+            current.remove();
+        } else {
+            current.set(parent);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.gerilovich.services.sql;
+
+import ru.gerilovich.services.exceptions.StatementLimitExceededException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Statements prepared between {@link SqlStatementCounter#open()} and {@link #close()}. Hibernate
+ * binds every value as a parameter, so an N+1 shows up as the same SQL text repeated N times.
+ */
+public class StatementCount implements AutoCloseable {
+    private final StatementCount parent;
+    private final Consumer<StatementCount> onClose;
+    private final Map<String, Integer> statements = new HashMap<>();
+    private int total;
+
+    StatementCount(StatementCount parent, Consumer<StatementCount> onClose) {
+        this.parent = parent;
+        this.onClose = onClose;
+    }
+
+    public int total() {
+        return total;
+    }
+
+    /** The distinct SQL texts, as Hibernate prepared them. */
+    public Set<String> statements() {
+        return Collections.unmodifiableSet(statements.keySet());
+    }
+
+    /** How often the most repeated statement ran, 0 if none did. */
+    public int maxRepeats() {
+        return statements.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    public Optional<String> mostRepeatedStatement() {
+        return statements.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey);
+    }
+
+    /** Describes the first limit exceeded, if any. */
+    public Optional<String> violation(int maxStatements, int maxRepeats) {
+        if (total > maxStatements) {
+            return Optional.of(total + " statements, at most " + maxStatements + " expected");
+        }
+        if (maxRepeats() > maxRepeats) {
+            return Optional.of("statement repeated " + maxRepeats() + " times, at most " + maxRepeats
+                    + " expected: " + mostRepeatedStatement().orElseThrow());
+        }
+        return Optional.empty();
+    }
+
+    public StatementCount assertAtMost(int maxStatements) {
+        return check(maxStatements, Integer.MAX_VALUE);
+    }
+
+    public StatementCount assertNoRepeatsOver(int maxRepeats) {
+        return check(Integer.MAX_VALUE, maxRepeats);
+    }
+
+    @Override
+    public void close() {
+        onClose.accept(parent);
+    }
+
+    StatementCount parent() {
+        return parent;
+    }
+
+    void record(String sql) {
+        total++;
+        statements.merge(sql, 1, Integer::sum);
+    }
+
+    private StatementCount check(int maxStatements, int maxRepeats) {
+        violation(maxStatements, maxRepeats).ifPresent(message -> {
+            throw new StatementLimitExceededException(message);
+        });
+        return this;
+    }
+}